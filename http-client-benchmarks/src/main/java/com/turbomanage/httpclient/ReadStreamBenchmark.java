@@ -0,0 +1,77 @@
+package com.turbomanage.httpclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.turbomanage.httpclient.benchmarks.QuietRequestLogger;
+
+/**
+ * Compares {@link BasicRequestHandler#readStream(InputStream)} with and
+ * without a known Content-Length against the original implementation, which
+ * allocated a new scratch array and a growing buffer for every response. Run
+ * with -prof gc to compare bytes allocated per read. Lives in the library's
+ * package to reach the package-private Content-Length stream.
+ *
+ * @author David M. Chandler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadStreamBenchmark {
+
+    @Param({ "512", "16384", "1048576" })
+    public int bodySize;
+
+    private BasicRequestHandler handler;
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        handler = new BasicRequestHandler(new QuietRequestLogger()) {
+        };
+        body = new byte[bodySize];
+    }
+
+    @Benchmark
+    public byte[] original() throws IOException {
+        InputStream in = new ByteArrayInputStream(body);
+        int nRead;
+        byte[] data = new byte[16384];
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        while ((nRead = in.read(data)) != -1) {
+            buffer.write(data, 0, nRead);
+        }
+        buffer.flush();
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] unknownLength() throws IOException {
+        return handler.readStream(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public byte[] knownLength() throws IOException {
+        return handler.readStream(new ContentLengthInputStream(
+                new ByteArrayInputStream(body), bodySize));
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.turbomanage.httpclient.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.turbomanage.httpclient.AsyncHttpClient;
+import com.turbomanage.httpclient.BasicRequestHandler;
+import com.turbomanage.httpclient.ExecutorServiceFactory;
+import com.turbomanage.httpclient.ResponseFuture;
+import com.turbomanage.httpclient.nio.NioHttpTransport;
+
+/**
+ * Fans out a batch of GETs through {@link AsyncHttpClient} and joins on all
+ * of them, either on the threads of an {@link ExecutorServiceFactory} or on
+ * the event loop of a {@link NioHttpTransport}. One operation is one
+ * complete batch.
+ *
+ * @author David M. Chandler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncFanOutBenchmark {
+
+    @Param({ "16", "64" })
+    public int fanOut;
+
+    @Param({ "threads", "nio" })
+    public String transport;
+
+    private LocalHttpServer server;
+    private ExecutorServiceFactory factory;
+    private NioHttpTransport nio;
+    private AsyncHttpClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new LocalHttpServer(1024);
+        factory = new ExecutorServiceFactory(64, 1024);
+        client = new AsyncHttpClient(factory, server.getBaseUrl(),
+                new BasicRequestHandler(new QuietRequestLogger()) {
+                });
+        client.setRequestLogger(new QuietRequestLogger());
+        if ("nio".equals(transport)) {
+            nio = new NioHttpTransport();
+            client.setTransport(nio);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        factory.shutdown();
+        if (nio != null) {
+            nio.close();
+        }
+        server.stop();
+    }
+
+    @Benchmark
+    public int fanOutAndJoin() throws InterruptedException, ExecutionException {
+        ResponseFuture[] futures = new ResponseFuture[fanOut];
+        for (int i = 0; i < fanOut; i++) {
+            futures[i] = client.getAsync("/get", null);
+        }
+        int bytes = 0;
+        for (ResponseFuture future : futures) {
+            bytes += future.get().getBody().length;
+        }
+        return bytes;
+    }
+
+}
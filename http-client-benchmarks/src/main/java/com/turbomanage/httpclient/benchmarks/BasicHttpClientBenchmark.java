@@ -0,0 +1,72 @@
+package com.turbomanage.httpclient.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.turbomanage.httpclient.BasicHttpClient;
+import com.turbomanage.httpclient.BasicRequestHandler;
+import com.turbomanage.httpclient.HttpResponse;
+
+/**
+ * Synchronous GET and POST round trips through {@link BasicHttpClient}
+ * against a {@link LocalHttpServer}. Throughput mode reports requests per
+ * second; sample mode reports latency percentiles. Run with -prof gc for
+ * bytes allocated per request and -t to add client threads.
+ *
+ * @author David M. Chandler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BasicHttpClientBenchmark {
+
+    @Param({ "1024", "65536" })
+    public int payloadSize;
+
+    private LocalHttpServer server;
+    private BasicHttpClient client;
+    private byte[] postData;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new LocalHttpServer(payloadSize);
+        client = new BasicHttpClient(server.getBaseUrl(),
+                new BasicRequestHandler(new QuietRequestLogger()) {
+                });
+        client.setRequestLogger(new QuietRequestLogger());
+        postData = new byte[payloadSize];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public HttpResponse get() {
+        return client.get("/get", null);
+    }
+
+    @Benchmark
+    public HttpResponse post() {
+        return client.post("/post", "application/octet-stream", postData);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.turbomanage.httpclient.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.turbomanage.httpclient.json.DefaultJsonMapper;
+
+/**
+ * Serialization and deserialization of DTOs through {@link DefaultJsonMapper}.
+ * The objectMapper* benchmarks call {@link ObjectMapper} directly without
+ * cached readers and writers, for comparison, and the newMapper* benchmarks
+ * include constructing the mapper, as when a client is made per request.
+ *
+ * @author David M. Chandler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultJsonMapperBenchmark {
+
+    @Param({ "1", "100" })
+    public int itemCount;
+
+    private DefaultJsonMapper mapper;
+    private ObjectMapper objectMapper;
+    private Item[] items;
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+        mapper = new DefaultJsonMapper();
+        objectMapper = new ObjectMapper();
+        items = new Item[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            Item item = new Item();
+            item.setId(i);
+            item.setName("Item number " + i);
+            item.setPrice(i * 1.25);
+            item.setAvailable(i % 2 == 0);
+            item.setTags(Arrays.asList("red", "large", "sale"));
+            items[i] = item;
+        }
+        json = mapper.toBytes(items);
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return mapper.toBytes(items);
+    }
+
+    @Benchmark
+    public Item[] toObj() {
+        return mapper.toObj(json, Item[].class);
+    }
+
+    @Benchmark
+    public Item[] roundTrip() {
+        return mapper.toObj(mapper.toBytes(items), Item[].class);
+    }
+
+    @Benchmark
+    public byte[] objectMapperToBytes() throws Exception {
+        return objectMapper.writeValueAsBytes(items);
+    }
+
+    @Benchmark
+    public Item[] objectMapperToObj() throws Exception {
+        return objectMapper.readValue(json, Item[].class);
+    }
+
+    @Benchmark
+    public Item[] newMapperToObj() {
+        return new DefaultJsonMapper().toObj(json, Item[].class);
+    }
+
+    @Benchmark
+    public Item[] newObjectMapperToObj() throws Exception {
+        return new ObjectMapper().readValue(json, Item[].class);
+    }
+
+}
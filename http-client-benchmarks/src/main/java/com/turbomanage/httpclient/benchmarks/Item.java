@@ -0,0 +1,58 @@
+package com.turbomanage.httpclient.benchmarks;
+
+import java.util.List;
+
+/**
+ * Typical DTO used by the JSON benchmarks.
+ *
+ * @author David M. Chandler
+ */
+public class Item {
+
+    private long id;
+    private String name;
+    private double price;
+    private boolean available;
+    private List<String> tags;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+}
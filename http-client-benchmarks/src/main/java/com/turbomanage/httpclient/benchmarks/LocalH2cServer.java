@@ -0,0 +1,71 @@
+package com.turbomanage.httpclient.benchmarks;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * In-process Jetty server that speaks both HTTP/1.1 and cleartext HTTP/2
+ * (h2c) on one port, for comparing transports. Every request receives the
+ * same payload of the configured size.
+ *
+ * @author David M. Chandler
+ */
+public class LocalH2cServer {
+
+    private final Server server;
+    private final ServerConnector connector;
+
+    /**
+     * Starts a server on an ephemeral loopback port.
+     *
+     * @param payloadSize Size of every response in bytes
+     * @throws Exception
+     */
+    public LocalH2cServer(int payloadSize) throws Exception {
+        final byte[] payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 'x');
+        server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        connector = new ServerConnector(server, new HttpConnectionFactory(config),
+                new HTTP2CServerConnectionFactory(config));
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                    HttpServletResponse response) throws IOException {
+                response.setContentType("application/octet-stream");
+                response.setContentLength(payload.length);
+                response.getOutputStream().write(payload);
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Base URL for clients, e.g. http://127.0.0.1:54321
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + connector.getLocalPort();
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.turbomanage.httpclient.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for a backend, built on the JDK's
+ * {@link com.sun.net.httpserver.HttpServer} so that benchmarks measure the
+ * client rather than the network or a remote server.
+ *
+ * <ul>
+ * <li>GET /get returns a fixed payload of the configured size</li>
+ * <li>POST /post reads and discards the request body and returns "ok"</li>
+ * </ul>
+ *
+ * @author David M. Chandler
+ */
+public class LocalHttpServer {
+
+    private static final byte[] OK = { 'o', 'k' };
+
+    static {
+        // Headers and body are written separately; without this, Nagle's
+        // algorithm and delayed ACKs add ~40ms to every exchange
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] payload;
+
+    /**
+     * Starts a server on an ephemeral loopback port.
+     *
+     * @param payloadSize Size of the response to GET /get in bytes
+     * @throws IOException
+     */
+    public LocalHttpServer(int payloadSize) throws IOException {
+        this.payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 'x');
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/get", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                drain(exchange.getRequestBody());
+                respond(exchange, payload);
+            }
+        });
+        server.createContext("/post", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                drain(exchange.getRequestBody());
+                respond(exchange, OK);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Base URL for clients, e.g. http://127.0.0.1:54321
+     */
+    public String getBaseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            // discard
+        }
+        in.close();
+    }
+
+}
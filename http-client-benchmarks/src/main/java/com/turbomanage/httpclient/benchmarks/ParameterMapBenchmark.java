@@ -0,0 +1,55 @@
+package com.turbomanage.httpclient.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.turbomanage.httpclient.ParameterMap;
+
+/**
+ * URL encoding of query and form parameters.
+ *
+ * @author David M. Chandler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterMapBenchmark {
+
+    @Param({ "4", "32" })
+    public int paramCount;
+
+    private ParameterMap params;
+
+    @Setup
+    public void setUp() {
+        params = new ParameterMap();
+        for (int i = 0; i < paramCount; i++) {
+            params.add("param" + i, "value " + i + " & more/" + i);
+        }
+    }
+
+    @Benchmark
+    public String urlEncode() {
+        return params.urlEncode();
+    }
+
+    @Benchmark
+    public byte[] urlEncodedBytes() {
+        return params.urlEncodedBytes();
+    }
+
+}
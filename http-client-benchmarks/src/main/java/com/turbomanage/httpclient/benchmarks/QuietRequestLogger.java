@@ -0,0 +1,33 @@
+package com.turbomanage.httpclient.benchmarks;
+
+import java.net.HttpURLConnection;
+
+import com.turbomanage.httpclient.HttpResponse;
+import com.turbomanage.httpclient.RequestLogger;
+
+/**
+ * Logger that is never enabled, so that benchmarks do not measure
+ * System.out.
+ *
+ * @author David M. Chandler
+ */
+public class QuietRequestLogger implements RequestLogger {
+
+    @Override
+    public boolean isLoggingEnabled() {
+        return false;
+    }
+
+    @Override
+    public void log(String msg) {
+    }
+
+    @Override
+    public void logRequest(HttpURLConnection urlConnection, Object content) {
+    }
+
+    @Override
+    public void logResponse(HttpResponse httpResponse) {
+    }
+
+}
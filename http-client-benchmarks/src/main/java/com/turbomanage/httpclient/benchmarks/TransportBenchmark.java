@@ -0,0 +1,103 @@
+package com.turbomanage.httpclient.benchmarks;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.turbomanage.httpclient.AsyncHttpClient;
+import com.turbomanage.httpclient.BasicRequestHandler;
+import com.turbomanage.httpclient.ExecutorServiceFactory;
+import com.turbomanage.httpclient.ResponseFuture;
+import com.turbomanage.httpclient.jdk.JdkHttpTransport;
+import com.turbomanage.httpclient.nio.NioHttpTransport;
+
+/**
+ * Concurrent GETs against a {@link LocalH2cServer} through each transport:
+ * HttpURLConnection on a thread pool (the default), the NIO HTTP/1.1 engine,
+ * and java.net.http over HTTP/1.1 and over h2c, where all requests share
+ * one multiplexed connection. One operation is one batch of concurrent
+ * requests.
+ *
+ * @author David M. Chandler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({ "urlconnection", "nio", "jdk-http1", "jdk-h2c" })
+    public String transport;
+
+    @Param({ "64" })
+    public int concurrency;
+
+    @Param({ "1024" })
+    public int payloadSize;
+
+    private LocalH2cServer server;
+    private ExecutorServiceFactory factory;
+    private NioHttpTransport nio;
+    private AsyncHttpClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new LocalH2cServer(payloadSize);
+        factory = new ExecutorServiceFactory(concurrency, 1024);
+        client = new AsyncHttpClient(factory, server.getBaseUrl(),
+                new BasicRequestHandler(new QuietRequestLogger()) {
+                });
+        client.setRequestLogger(new QuietRequestLogger());
+        if ("nio".equals(transport)) {
+            nio = new NioHttpTransport();
+            nio.setMaxConnectionsPerHost(concurrency);
+            client.setTransport(nio);
+        } else if ("jdk-http1".equals(transport)) {
+            client.setTransport(new JdkHttpTransport(HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1).build()));
+        } else if ("jdk-h2c".equals(transport)) {
+            client.setTransport(new JdkHttpTransport());
+            // Upgrade to h2c on one request first, so the batch shares its connection
+            client.getAsync("/", null).get();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        factory.shutdown();
+        if (nio != null) {
+            nio.close();
+        }
+        server.stop();
+    }
+
+    @Benchmark
+    public int concurrentGets() throws InterruptedException, ExecutionException {
+        ResponseFuture[] futures = new ResponseFuture[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            futures[i] = client.getAsync("/get", null);
+        }
+        int bytes = 0;
+        for (ResponseFuture future : futures) {
+            bytes += future.get().getBody().length;
+        }
+        return bytes;
+    }
+
+}
@@ -4,13 +4,25 @@ package com.turbomanage.httpclient;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
 import java.net.CookieHandler;
 import java.net.CookieManager;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Lightweight HTTP client that facilitates GET, POST, PUT, and DELETE requests
@@ -19,6 +31,10 @@ import java.util.TreeMap;
  * enable streaming, buffering, or other types of readers / writers, set an
  * alternate {@link RequestHandler}.
  *
+ * <p>A single instance may be shared by many threads. State belonging to one
+ * request is kept in a {@link RequestContext}, and headers added with
+ * {@link #addHeader(String, String)} are published as an immutable snapshot.</p>
+ *
  * @author David M. Chandler
  */
 public abstract class AbstractHttpClient {
@@ -27,24 +43,70 @@ public abstract class AbstractHttpClient {
     public static final String MULTIPART = "multipart/form-data";
     public static final String JSON = "application/json;charset=UTF-8";
 
+    /**
+     * Most bytes of an unread response body drained in keep-alive mode.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private static ExecutorService batchExecutor;
+
     protected String baseUrl = "";
 
-    protected RequestLogger requestLogger = new ConsoleRequestLogger();
+    protected volatile RequestLogger requestLogger = AsyncRequestLogger.getDefault();
     protected final RequestHandler requestHandler;
-    private Map<String, String> requestHeaders = new TreeMap<String, String>();
+    /**
+     * True if the handler writes byte[] content unchanged, so that its length
+     * is known before it is written.
+     */
+    private final boolean contentLengthKnown;
+    /**
+     * True if the handler writes to the connection's own output stream, so
+     * that the bytes of a body are sent as is.
+     */
+    private final boolean outputUnchanged;
+    /**
+     * Immutable snapshot, replaced on every change so that requests in flight
+     * can iterate it without locking.
+     */
+    private volatile Map<String, String> requestHeaders = Collections.emptyMap();
     /**
      * Default 2s, deliberately short. If you need longer, you should be using
      * {@link AsyncHttpClient} instead.
      */
-    protected int connectionTimeout = 2000;
+    protected volatile int connectionTimeout = 2000;
     /**
      * Default 8s, reasonably short if accidentally called from the UI thread.
      */
-    protected int readTimeout = 8000;
+    protected volatile int readTimeout = 8000;
     /**
-     * Indicates connection status, used by timeout logic
+     * Optional response cache consulted for GET requests.
      */
-    private boolean isConnected;
+    protected volatile HttpCache httpCache;
+    /**
+     * Optional coalescer for identical concurrent GET and HEAD requests.
+     */
+    protected volatile RequestCoalescer requestCoalescer;
+    /**
+     * Request bodies at least this large are gzip-compressed; -1 disables.
+     */
+    protected volatile long requestCompressionThreshold = -1;
+    /**
+     * Optional listener notified at each phase of a request.
+     */
+    protected volatile RequestListener requestListener;
+    /**
+     * Optional replacement for {@link HttpURLConnection}.
+     */
+    protected volatile HttpTransport transport;
+    /**
+     * When set, connections are drained and closed rather than disconnected
+     * so that the JDK can reuse their sockets.
+     */
+    protected volatile KeepAlivePool keepAlivePool;
+    /**
+     * Fails requests to failing hosts at once if set.
+     */
+    protected volatile CircuitBreaker circuitBreaker;
 
     /**
      * Constructs a client with empty baseUrl. Prevent sub-classes from calling
@@ -77,6 +139,26 @@ public abstract class AbstractHttpClient {
     public AbstractHttpClient(String baseUrl, RequestHandler requestHandler) {
         this.baseUrl = baseUrl;
         this.requestHandler = requestHandler;
+        this.contentLengthKnown = inheritsBasic(requestHandler, "writeStream",
+                OutputStream.class, byte[].class);
+        this.outputUnchanged = inheritsBasic(requestHandler, "openOutput",
+                HttpURLConnection.class);
+    }
+
+    /**
+     * Checks whether the handler uses {@link BasicRequestHandler}'s version
+     * of a method. Handlers that override openOutput or writeStream may
+     * write any number of bytes, for example to encrypt or compress the
+     * content.
+     */
+    private static boolean inheritsBasic(RequestHandler requestHandler, String name,
+            Class<?>... parameterTypes) {
+        try {
+            Method method = requestHandler.getClass().getMethod(name, parameterTypes);
+            return method.getDeclaringClass() == BasicRequestHandler.class;
+        } catch (Exception e) {
+            return false;
+        }
     }
 
     /**
@@ -146,6 +228,34 @@ public abstract class AbstractHttpClient {
         return execute(new HttpPut(path, null, contentType, data));
     }
 
+    /**
+     * Execute a POST request whose content is streamed from a
+     * {@link RequestBody} and return the response. Use this for uploads of
+     * arbitrary size.
+     *
+     * @param path
+     * @param contentType
+     * @param body
+     * @return Response object
+     */
+    public HttpResponse post(String path, String contentType, RequestBody body) {
+        return execute(new HttpPost(path, null, contentType, body));
+    }
+
+    /**
+     * Execute a PUT request whose content is streamed from a
+     * {@link RequestBody} and return the response. Use this for uploads of
+     * arbitrary size.
+     *
+     * @param path
+     * @param contentType
+     * @param body
+     * @return Response object
+     */
+    public HttpResponse put(String path, String contentType, RequestBody body) {
+        return execute(new HttpPut(path, null, contentType, body));
+    }
+
     /**
      * Execute a DELETE request and return the response. The supplied parameters
      * are URL encoded and sent as the query string.
@@ -158,6 +268,43 @@ public abstract class AbstractHttpClient {
         return execute(new HttpDelete(path, params));
     }
 
+    /**
+     * Execute a GET request and return the response without reading the body.
+     * The caller reads the body from
+     * {@link StreamingHttpResponse#getInputStream()} and must close the
+     * response when done.
+     *
+     * @param path
+     * @param params
+     * @return Streaming response object (may be null if request did not complete)
+     */
+    public StreamingHttpResponse getStream(String path, ParameterMap params) {
+        return executeStream(new HttpGet(path, params));
+    }
+
+    /**
+     * Like {@link #execute(HttpRequest)}, but the response body is not read
+     * into memory. Use this for downloads of arbitrary size. The caller must
+     * close the returned response.
+     *
+     * @param httpRequest
+     * @return Streaming response object (may be null if request did not complete)
+     */
+    public StreamingHttpResponse executeStream(HttpRequest httpRequest) {
+        StreamingHttpResponse httpResponse = null;
+        try {
+            httpResponse = doHttpMethodStreaming(httpRequest.getPath(),
+                    httpRequest.getHttpMethod(), httpRequest.getContentType(),
+                    getRequestBody(httpRequest), newRequestContext());
+        } catch (HttpRequestException hre) {
+            requestHandler.onError(hre);
+        } catch (Exception e) {
+            // In case a RuntimeException has leaked out, wrap it in HRE
+            requestHandler.onError(new HttpRequestException(e, httpResponse));
+        }
+        return httpResponse;
+    }
+
     /**
      * This method wraps the call to doHttpMethod and invokes the custom error
      * handler in case of exception. It may be overridden by other clients such
@@ -170,9 +317,7 @@ public abstract class AbstractHttpClient {
     public HttpResponse execute(HttpRequest httpRequest) {
         HttpResponse httpResponse = null;
         try {
-            httpResponse = doHttpMethod(httpRequest.getPath(),
-                    httpRequest.getHttpMethod(), httpRequest.getContentType(),
-                    httpRequest.getContent());
+            httpResponse = doHttpRequest(httpRequest, newRequestContext());
         } catch (HttpRequestException hre) {
             requestHandler.onError(hre);
         } catch (Exception e) {
@@ -182,6 +327,221 @@ public abstract class AbstractHttpClient {
         return httpResponse;
     }
 
+    /**
+     * Executes many requests, at most parallelism at a time, and waits for
+     * all of them. The calling thread makes requests too, and the others run
+     * on a shared pool of daemon threads. Each request gets the same
+     * timeouts, cache and other settings as {@link #execute(HttpRequest)},
+     * and an {@link AsyncHttpClient} also retries as in
+     * {@link AsyncHttpClient#tryMany(HttpRequest)}. To reuse connections
+     * across the batch, set a {@link KeepAlivePool} or a pooling
+     * {@link HttpTransport}. Errors are returned in the results rather than
+     * passed to the {@link RequestHandler}.
+     *
+     * <p>If the calling thread is interrupted, no further requests are
+     * started and the results of those not made hold an
+     * {@link InterruptedException}.</p>
+     *
+     * @param requests
+     * @param parallelism Most requests in flight at once
+     * @return One result per request, in the same order
+     */
+    public List<BatchResult> executeAll(final List<? extends HttpRequest> requests,
+            int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        final int n = requests.size();
+        final BatchResult[] results = new BatchResult[n];
+        final AtomicInteger next = new AtomicInteger();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int i;
+                while ((i = next.getAndIncrement()) < n) {
+                    results[i] = doBatchRequest(requests.get(i));
+                }
+            }
+        };
+        List<Future<?>> helpers = new ArrayList<Future<?>>();
+        for (int w = 1; w < Math.min(parallelism, n); w++) {
+            helpers.add(getBatchExecutor().submit(worker));
+        }
+        worker.run();
+        boolean interrupted = false;
+        for (Future<?> helper : helpers) {
+            while (true) {
+                try {
+                    helper.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // Let requests in flight finish, but start no more
+                    interrupted = true;
+                    next.set(n);
+                } catch (ExecutionException e) {
+                    // Not thrown, doBatchRequest catches everything
+                    break;
+                }
+            }
+        }
+        List<BatchResult> list = new ArrayList<BatchResult>(n);
+        for (int i = 0; i < n; i++) {
+            list.add((results[i] != null) ? results[i]
+                    : new BatchResult(requests.get(i), null, new InterruptedException()));
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return list;
+    }
+
+    /**
+     * Makes one request of a batch. Called on several threads at once.
+     *
+     * @param httpRequest
+     * @return Result holding the response or exception
+     */
+    protected BatchResult doBatchRequest(HttpRequest httpRequest) {
+        try {
+            return new BatchResult(httpRequest,
+                    doHttpRequest(httpRequest, newRequestContext()), null);
+        } catch (Exception e) {
+            return new BatchResult(httpRequest, null, e);
+        }
+    }
+
+    /**
+     * Returns the shared pool on which batches run. Threads are created as
+     * needed and end after a minute idle, so the number alive is that of
+     * the requests in flight.
+     *
+     * @return Executor
+     */
+    static synchronized ExecutorService getBatchExecutor() {
+        if (batchExecutor == null) {
+            batchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "http-client-batch-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return batchExecutor;
+    }
+
+    /**
+     * Makes one attempt at a request. This is where optional layers such as
+     * the {@link RequestCoalescer} and {@link HttpCache} are applied before
+     * delegating the exchange itself to doHttpMethod. Both
+     * {@link #execute(HttpRequest)} and
+     * {@link AsyncHttpClient#tryMany(HttpRequest)} go through here.
+     *
+     * @param httpRequest
+     * @param context Timeouts and state of this attempt
+     * @return Response object
+     * @throws HttpRequestException
+     */
+    protected HttpResponse doHttpRequest(final HttpRequest httpRequest,
+            final RequestContext context) throws HttpRequestException {
+        RequestCoalescer coalescer = requestCoalescer;
+        HttpMethod httpMethod = httpRequest.getHttpMethod();
+        if (coalescer != null && (httpMethod == HttpMethod.GET || httpMethod == HttpMethod.HEAD)) {
+            String key = coalescer.getKey(httpMethod, baseUrl + httpRequest.getPath(),
+                    requestHeaders);
+            return coalescer.execute(key, new Callable<HttpResponse>() {
+                @Override
+                public HttpResponse call() throws Exception {
+                    return doExchange(httpRequest, context);
+                }
+            });
+        }
+        return doExchange(httpRequest, context);
+    }
+
+    /**
+     * Makes the request through the cache, if any.
+     */
+    private HttpResponse doExchange(HttpRequest httpRequest, RequestContext context)
+            throws HttpRequestException {
+        HttpCache cache = httpCache;
+        if (cache != null) {
+            return doCachedHttpRequest(cache, httpRequest, context);
+        }
+        return doHttpMethod(httpRequest.getPath(), httpRequest.getHttpMethod(),
+                httpRequest.getContentType(), getRequestBody(httpRequest), context);
+    }
+
+    /**
+     * Serves GET requests from the cache while fresh, revalidates stale
+     * entries with a conditional request, and stores cacheable responses.
+     * Successful requests with other methods invalidate the cached URL.
+     */
+    private HttpResponse doCachedHttpRequest(HttpCache cache, HttpRequest httpRequest,
+            RequestContext context) throws HttpRequestException {
+        String url = baseUrl + httpRequest.getPath();
+        HttpMethod httpMethod = httpRequest.getHttpMethod();
+        if (httpMethod != HttpMethod.GET) {
+            HttpResponse httpResponse = doHttpMethod(httpRequest.getPath(), httpMethod,
+                    httpRequest.getContentType(), getRequestBody(httpRequest), context);
+            if (httpMethod != HttpMethod.HEAD && httpResponse != null
+                    && httpResponse.getStatus() < 400) {
+                cache.remove(url);
+            }
+            return httpResponse;
+        }
+
+        long requestTime = System.currentTimeMillis();
+        CacheEntry cached = cache.get(url);
+        if (cached != null) {
+            if (cached.isFresh(requestTime)) {
+                return cached.toHttpResponse();
+            }
+            cached.addConditionalHeaders(context);
+        }
+        HttpResponse httpResponse = doHttpMethod(httpRequest.getPath(), httpMethod,
+                httpRequest.getContentType(), getRequestBody(httpRequest), context);
+        long responseTime = System.currentTimeMillis();
+        if (httpResponse == null) {
+            return null;
+        }
+        if (cached != null && httpResponse.getStatus() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            CacheEntry updated = cached.revalidate(httpResponse, requestTime, responseTime);
+            cache.put(url, updated);
+            return updated.toHttpResponse();
+        }
+        if (CacheEntry.isCacheable(httpResponse, hasCredentials(context))) {
+            cache.put(url, new CacheEntry(httpResponse, requestTime, responseTime));
+        } else if (cached != null) {
+            cache.remove(url);
+        }
+        return httpResponse;
+    }
+
+    /**
+     * Whether a request attempt sends an Authorization or Cookie header, set
+     * on the client or the context. Cookies added by a
+     * {@link CookieManager} are not visible here.
+     */
+    private boolean hasCredentials(RequestContext context) {
+        return hasCredentials(requestHeaders) || hasCredentials(context.getRequestHeaders());
+    }
+
+    private static boolean hasCredentials(Map<String, String> headers) {
+        if (headers == null) {
+            return false;
+        }
+        for (String name : headers.keySet()) {
+            if ("Authorization".equalsIgnoreCase(name) || "Cookie".equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * This is the method that drives each request. It implements the request
      * lifecycle defined as open, prepare, write, read. Each of these methods in
@@ -194,58 +554,627 @@ public abstract class AbstractHttpClient {
      * @return Response object
      * @throws HttpRequestException
      */
-    @SuppressWarnings("finally")
     protected HttpResponse doHttpMethod(String path, HttpMethod httpMethod, String contentType,
             byte[] content) throws HttpRequestException {
+        return doHttpMethod(path, httpMethod, contentType, toRequestBody(content),
+                newRequestContext());
+    }
+
+    /**
+     * Like {@link #doHttpMethod(String, HttpMethod, String, byte[])}, but
+     * streams the request content from a {@link RequestBody} and keeps all
+     * per-request state in the supplied {@link RequestContext}.
+     *
+     * @param path Whole or partial URL string, will be appended to baseUrl
+     * @param httpMethod Request method
+     * @param contentType MIME type of the request
+     * @param body Request data, may be null
+     * @param context Timeouts and state of this attempt
+     * @return Response object
+     * @throws HttpRequestException
+     */
+    protected HttpResponse doHttpMethod(String path, HttpMethod httpMethod, String contentType,
+            RequestBody body, RequestContext context) throws HttpRequestException {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker == null) {
+            return doAttempt(path, httpMethod, contentType, body, context);
+        }
+        String host = acquireCircuit(breaker, path);
+        HttpResponse httpResponse = null;
+        try {
+            httpResponse = doAttempt(path, httpMethod, contentType, body, context);
+            return httpResponse;
+        } finally {
+            releaseCircuit(breaker, host, httpResponse, context);
+        }
+    }
+
+    /**
+     * Sends the request without consulting the {@link CircuitBreaker}.
+     */
+    @SuppressWarnings("finally")
+    private HttpResponse doAttempt(String path, HttpMethod httpMethod, String contentType,
+            RequestBody body, RequestContext context) throws HttpRequestException {
+
+        HttpTransport t = transport;
+        if (t != null) {
+            return doTransport(t, path, httpMethod, contentType, body, context);
+        }
 
         HttpURLConnection uc = null;
         HttpResponse httpResponse = null;
+        RequestListener listener = requestListener;
+        KeepAlivePool pool = keepAlivePool;
+        String host = null;
+        boolean reusable = false;
+        startAttempt(path, httpMethod, context, listener);
 
         try {
-            isConnected = false;
             uc = openConnection(path);
-            prepareConnection(uc, httpMethod, contentType);
-            appendRequestHeaders(uc);
-            if (requestLogger.isLoggingEnabled()) {
-                requestLogger.logRequest(uc, content);
-            }
-            // Explicit connect not required, but lets us easily determine when
-            // possible timeout exception occurred
-            uc.connect();
-            isConnected = true;
-            if (uc.getDoOutput() && content != null) {
-                writeOutputStream(uc, content);
+            context.setConnection(uc);
+            if (pool != null) {
+                host = RequestMetrics.getHost(context.getUrl());
+                pool.acquire(host);
             }
+            sendRequest(uc, httpMethod, contentType, body, context);
+            readStatus(uc, context, listener);
             if (uc.getDoInput()) {
                 httpResponse = readInputStream(uc);
+                reusable = true;
             } else {
                 httpResponse = new HttpResponse(uc, null);
             }
+            readComplete(httpResponse, context, listener);
         } catch (Exception e) {
-            // Try reading the error stream to populate status code such as 404
+            // Try reading the error stream to populate status code such as 404,
+            // unless the body was cut short and the connection dropped
             try {
-                httpResponse = readErrorStream(uc);
+                if (!(e instanceof RequestBodyException)) {
+                    httpResponse = readErrorStream(uc);
+                    reusable = httpResponse.getStatus() > 0;
+                }
             } catch (Exception ee) {
                 e.printStackTrace();
                 // Must catch IOException, but swallow to show first cause only
             } finally {
                 // if status available, return it else throw
                 if (httpResponse != null && httpResponse.getStatus() > 0) {
+                    readComplete(httpResponse, context, listener);
                     return httpResponse;
                 }
-                throw new HttpRequestException(e, httpResponse);
+                HttpRequestException hre = new HttpRequestException(e, httpResponse);
+                if (listener != null) {
+                    listener.onError(context, hre);
+                }
+                throw hre;
             }
         } finally {
             if (requestLogger.isLoggingEnabled()) {
-                requestLogger.logResponse(httpResponse);
+                logResponse(httpResponse, context);
             }
             if (uc != null) {
-                uc.disconnect();
+                releaseConnection(uc, pool, host, reusable);
             }
         }
         return httpResponse;
     }
 
+    /**
+     * Disconnects after a request unless a {@link KeepAlivePool} is set and
+     * the response was read completely, in which case the closed streams
+     * have already returned the socket to the JDK's keep-alive cache.
+     */
+    static void releaseConnection(HttpURLConnection uc, KeepAlivePool pool, String host,
+            boolean reusable) {
+        if (pool != null && host != null && reusable
+                && !"close".equalsIgnoreCase(uc.getHeaderField("Connection"))
+                && pool.release(host)) {
+            return;
+        }
+        uc.disconnect();
+    }
+
+    /**
+     * Checks that the circuit for the host of a request is not open.
+     *
+     * @return Host name, followed by :port if not the default port
+     * @throws HttpRequestException caused by a {@link CircuitOpenException}
+     */
+    private String acquireCircuit(CircuitBreaker breaker, String path)
+            throws HttpRequestException {
+        String host = RequestMetrics.getHost(baseUrl + path);
+        try {
+            breaker.acquire(host);
+        } catch (CircuitOpenException e) {
+            throw new HttpRequestException(e, null);
+        }
+        return host;
+    }
+
+    /**
+     * Records the outcome of an attempt allowed by
+     * {@link #acquireCircuit(CircuitBreaker, String)}. A null response means
+     * that the attempt threw. Cancelled attempts are not counted.
+     */
+    private void releaseCircuit(CircuitBreaker breaker, String host, HttpResponse httpResponse,
+            RequestContext context) {
+        if (context.isCancelled()) {
+            breaker.release(host);
+            return;
+        }
+        boolean failed = httpResponse == null || breaker.isFailure(httpResponse);
+        breaker.record(host, failed, System.currentTimeMillis() - context.getStartTime());
+    }
+
+    /**
+     * Reads what remains of a response body so that closing the stream
+     * returns the socket to the keep-alive cache at once. Bodies too large to
+     * drain cheaply are left to the JDK, which reads or discards them when
+     * the stream is closed.
+     *
+     * @param in Response body stream
+     * @return true if the end of the stream was reached
+     */
+    static boolean drain(InputStream in) {
+        byte[] buffer = new byte[4096];
+        int remaining = MAX_DRAIN_BYTES;
+        try {
+            while (remaining > 0) {
+                int n = in.read(buffer, 0, Math.min(buffer.length, remaining));
+                if (n == -1) {
+                    return true;
+                }
+                remaining -= n;
+            }
+        } catch (IOException e) {
+            // Closing the stream releases or discards the socket either way
+        }
+        return false;
+    }
+
+    /**
+     * Makes one attempt through an {@link HttpTransport}, applying the same
+     * headers, compression, logging and listener events as the
+     * {@link HttpURLConnection} path.
+     */
+    private HttpResponse doTransport(HttpTransport t, String path, HttpMethod httpMethod,
+            String contentType, RequestBody body, RequestContext context)
+            throws HttpRequestException {
+        RequestListener listener = requestListener;
+        startAttempt(path, httpMethod, context, listener);
+        Map<String, String> headers = getTransportHeaders(contentType, context);
+        body = getTransportBody(httpMethod, body, headers);
+        if (requestLogger.isLoggingEnabled()) {
+            logTransportRequest(httpMethod, context);
+        }
+        HttpResponse httpResponse = null;
+        try {
+            httpResponse = t.execute(httpMethod, context.getUrl(), headers, body, context);
+        } catch (IOException e) {
+            throw transportError(e, context, listener);
+        }
+        transportComplete(httpResponse, context, listener);
+        return httpResponse;
+    }
+
+    /**
+     * Starts one attempt through an {@link AsyncHttpTransport} without
+     * blocking. The returned future is completed with the response or failed
+     * with an {@link HttpRequestException}, usually on a transport thread.
+     *
+     * @param t Transport
+     * @param httpRequest
+     * @param context Timeouts and state of this attempt
+     * @return Future response
+     */
+    protected ResponseFuture doTransportAsync(AsyncHttpTransport t, HttpRequest httpRequest,
+            final RequestContext context) {
+        final RequestListener listener = requestListener;
+        final ResponseFuture result = new ResponseFuture();
+        final CircuitBreaker breaker = circuitBreaker;
+        final String host;
+        try {
+            host = (breaker == null) ? null : acquireCircuit(breaker, httpRequest.getPath());
+        } catch (HttpRequestException e) {
+            result.fail(e);
+            return result;
+        }
+        HttpMethod httpMethod = httpRequest.getHttpMethod();
+        startAttempt(httpRequest.getPath(), httpMethod, context, listener);
+        Map<String, String> headers = getTransportHeaders(httpRequest.getContentType(), context);
+        RequestBody body = getTransportBody(httpMethod, getRequestBody(httpRequest), headers);
+        if (requestLogger.isLoggingEnabled()) {
+            logTransportRequest(httpMethod, context);
+        }
+        final ResponseFuture exchange = new ResponseFuture();
+        result.addCallback(new AsyncCallback() {
+            @Override
+            public void onComplete(HttpResponse httpResponse) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // Let the transport abandon the exchange
+                if (e instanceof CancellationException) {
+                    exchange.cancel(true);
+                }
+            }
+        });
+        exchange.addCallback(new AsyncCallback() {
+            @Override
+            public void onComplete(HttpResponse httpResponse) {
+                if (breaker != null) {
+                    releaseCircuit(breaker, host, httpResponse, context);
+                }
+                transportComplete(httpResponse, context, listener);
+                result.complete(httpResponse);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (breaker != null) {
+                    releaseCircuit(breaker, host, null, context);
+                }
+                result.fail(transportError(e, context, listener));
+            }
+        });
+        try {
+            t.executeAsync(httpMethod, context.getUrl(), headers, body, context, exchange);
+        } catch (RuntimeException e) {
+            exchange.fail(e);
+        }
+        return result;
+    }
+
+    /**
+     * Collects the headers that {@link RequestHandler#prepareConnection} and
+     * the client would otherwise set on an {@link HttpURLConnection}.
+     */
+    private Map<String, String> getTransportHeaders(String contentType, RequestContext context) {
+        Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+        headers.put("Accept-Charset", RequestHandler.UTF8);
+        headers.put("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
+        headers.putAll(requestHeaders);
+        if (context.getRequestHeaders() != null) {
+            headers.putAll(context.getRequestHeaders());
+        }
+        return headers;
+    }
+
+    /**
+     * Drops the body of methods that do not send one and applies request
+     * compression.
+     */
+    private RequestBody getTransportBody(HttpMethod httpMethod, RequestBody body,
+            Map<String, String> headers) {
+        if (body == null || !httpMethod.getDoOutput()) {
+            return null;
+        }
+        if (shouldCompress(body)) {
+            headers.put("Content-Encoding", "gzip");
+            return new GzipRequestBody(body);
+        }
+        return body;
+    }
+
+    /**
+     * Logs a request with its context where the logger supports it, so that
+     * an {@link AsyncRequestLogger} samples the request and its response
+     * alike.
+     */
+    private void logRequest(HttpURLConnection uc, RequestBody body, RequestContext context)
+            throws IOException {
+        RequestLogger logger = requestLogger;
+        if (logger instanceof AsyncRequestLogger) {
+            ((AsyncRequestLogger) logger).logRequest(uc, body, context);
+        } else {
+            logger.logRequest(uc, body);
+        }
+    }
+
+    private void logTransportRequest(HttpMethod httpMethod, RequestContext context) {
+        RequestLogger logger = requestLogger;
+        String line = httpMethod.getMethodName() + " " + context.getUrl();
+        if (logger instanceof AsyncRequestLogger) {
+            ((AsyncRequestLogger) logger).logRequest(line, context);
+        } else {
+            logger.log(line);
+        }
+    }
+
+    private void logResponse(HttpResponse httpResponse, RequestContext context) {
+        RequestLogger logger = requestLogger;
+        if (logger instanceof AsyncRequestLogger) {
+            ((AsyncRequestLogger) logger).logResponse(httpResponse, context);
+        } else {
+            logger.logResponse(httpResponse);
+        }
+    }
+
+    private void transportComplete(HttpResponse httpResponse, RequestContext context,
+            RequestListener listener) {
+        readComplete(httpResponse, context, listener);
+        if (requestLogger.isLoggingEnabled()) {
+            logResponse(httpResponse, context);
+        }
+    }
+
+    private HttpRequestException transportError(Exception e, RequestContext context,
+            RequestListener listener) {
+        HttpRequestException hre = (e instanceof HttpRequestException)
+                ? (HttpRequestException) e : new HttpRequestException(e, null);
+        if (listener != null) {
+            listener.onError(context, hre);
+        }
+        return hre;
+    }
+
+    /**
+     * Like {@link #doHttpMethod(String, HttpMethod, String, RequestBody, RequestContext)}, but
+     * does not read the response body. The returned response holds the live
+     * input stream (or error stream if the server returned an error status)
+     * and the connection stays open until the caller has read the body to the
+     * end or closed the response.
+     *
+     * @param path Whole or partial URL string, will be appended to baseUrl
+     * @param httpMethod Request method
+     * @param contentType MIME type of the request
+     * @param body Request data, may be null
+     * @param context Timeouts and state of this attempt
+     * @return Response object which must be closed by the caller
+     * @throws HttpRequestException
+     */
+    protected StreamingHttpResponse doHttpMethodStreaming(String path, HttpMethod httpMethod,
+            String contentType, RequestBody body, RequestContext context)
+            throws HttpRequestException {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker == null) {
+            return doStreamingAttempt(path, httpMethod, contentType, body, context);
+        }
+        String host = acquireCircuit(breaker, path);
+        StreamingHttpResponse httpResponse = null;
+        try {
+            httpResponse = doStreamingAttempt(path, httpMethod, contentType, body, context);
+            return httpResponse;
+        } finally {
+            // Counted once the status is known; the body is read later
+            releaseCircuit(breaker, host, httpResponse, context);
+        }
+    }
+
+    /**
+     * Sends the request without consulting the {@link CircuitBreaker}.
+     */
+    private StreamingHttpResponse doStreamingAttempt(String path, HttpMethod httpMethod,
+            String contentType, RequestBody body, RequestContext context)
+            throws HttpRequestException {
+
+        HttpURLConnection uc = null;
+        StreamingHttpResponse httpResponse = null;
+        RequestListener listener = requestListener;
+        KeepAlivePool pool = keepAlivePool;
+        String host = null;
+        startAttempt(path, httpMethod, context, listener);
+
+        try {
+            uc = openConnection(path);
+            if (pool != null) {
+                host = RequestMetrics.getHost(context.getUrl());
+                pool.acquire(host);
+            }
+            sendRequest(uc, httpMethod, contentType, body, context);
+            readStatus(uc, context, listener);
+            InputStream in = null;
+            if (uc.getDoInput()) {
+                in = requestHandler.openInput(uc);
+            }
+            httpResponse = new StreamingHttpResponse(uc, in, pool, host);
+        } catch (Exception e) {
+            // Hand back the error stream with status code such as 404,
+            // unless the body was cut short and the connection dropped
+            if (uc != null && !(e instanceof RequestBodyException)) {
+                InputStream err = null;
+                try {
+                    err = ContentEncoding.decode(uc, uc.getErrorStream());
+                } catch (IOException ee) {
+                    // Corrupt error body, status is still useful
+                }
+                httpResponse = new StreamingHttpResponse(uc, err, pool, host);
+                if (httpResponse.getStatus() <= 0) {
+                    httpResponse.close();
+                    httpResponse = null;
+                }
+            }
+            if (httpResponse == null) {
+                HttpRequestException hre = new HttpRequestException(e, null);
+                if (listener != null) {
+                    listener.onError(context, hre);
+                }
+                throw hre;
+            }
+        } finally {
+            if (requestLogger.isLoggingEnabled()) {
+                logResponse(httpResponse, context);
+            }
+        }
+        return httpResponse;
+    }
+
+    /**
+     * Implements the prepare, connect, and write phases of the request
+     * lifecycle on an open connection.
+     *
+     * @param uc An open connection
+     * @param httpMethod Request method
+     * @param contentType MIME type of the request
+     * @param body Request data, may be null
+     * @param context Timeouts and state of this attempt
+     * @throws Exception
+     */
+    protected void sendRequest(HttpURLConnection uc, HttpMethod httpMethod, String contentType,
+            RequestBody body, RequestContext context) throws Exception {
+        RequestListener listener = requestListener;
+        prepareConnection(uc, httpMethod, contentType, context);
+        if (uc.getDoOutput() && body != null) {
+            body = compressRequestBody(uc, body);
+            // A stream wrapped by the handler may change the length
+            setStreamingMode(uc, outputUnchanged ? body.getContentLength() : -1);
+        }
+        appendRequestHeaders(uc);
+        if (context.getRequestHeaders() != null) {
+            for (Map.Entry<String, String> header : context.getRequestHeaders().entrySet()) {
+                uc.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        if (requestLogger.isLoggingEnabled()) {
+            logRequest(uc, body, context);
+        }
+        if (listener != null) {
+            context.mark(RequestPhase.PREPARE);
+            listener.onPrepare(context, uc);
+        }
+        // Explicit connect not required, but lets us easily determine when
+        // possible timeout exception occurred
+        uc.connect();
+        context.setConnected();
+        if (listener != null) {
+            context.mark(RequestPhase.CONNECT);
+            listener.onConnect(context, uc);
+        }
+        if (uc.getDoOutput() && body != null) {
+            writeOutputStream(uc, body);
+        }
+        if (listener != null) {
+            context.mark(RequestPhase.WRITE);
+            listener.onWriteComplete(context, uc);
+        }
+    }
+
+    /**
+     * Records the method and URL of an attempt and notifies the listener, if
+     * any, that it has started.
+     */
+    private void startAttempt(String path, HttpMethod httpMethod, RequestContext context,
+            RequestListener listener) {
+        context.setRequest(httpMethod, baseUrl + path);
+        if (listener != null) {
+            context.mark(RequestPhase.OPEN);
+            listener.onOpen(context);
+        }
+    }
+
+    /**
+     * When a listener is set, waits for the response status so that server
+     * time can be told apart from transfer time. Otherwise the status is read
+     * implicitly along with the body.
+     */
+    private void readStatus(HttpURLConnection uc, RequestContext context,
+            RequestListener listener) throws IOException {
+        if (listener != null) {
+            uc.getResponseCode();
+            context.mark(RequestPhase.FIRST_BYTE);
+            listener.onFirstByte(context, uc);
+        }
+    }
+
+    private void readComplete(HttpResponse httpResponse, RequestContext context,
+            RequestListener listener) {
+        if (listener != null) {
+            context.mark(RequestPhase.READ);
+            listener.onReadComplete(context, httpResponse);
+        }
+    }
+
+    /**
+     * Returns the content of a request as a {@link RequestBody}, wrapping
+     * byte[] content if necessary.
+     *
+     * @param httpRequest
+     * @return Request body or null if the request has no content
+     */
+    protected RequestBody getRequestBody(HttpRequest httpRequest) {
+        if (httpRequest.getBody() != null) {
+            return httpRequest.getBody();
+        }
+        return toRequestBody(httpRequest.getContent());
+    }
+
+    /**
+     * Wraps byte[] content in a {@link RequestBody} which delegates I/O to
+     * {@link RequestHandler#writeStream(OutputStream, byte[])}. The length is
+     * only known, and the content sent in fixed-length mode, if the handler
+     * overrides neither {@link BasicRequestHandler#writeStream} nor
+     * {@link BasicRequestHandler#openOutput}. Otherwise the content is sent
+     * in chunks.
+     *
+     * @param content
+     * @return Request body or null if content is null
+     */
+    protected RequestBody toRequestBody(final byte[] content) {
+        if (content == null) {
+            return null;
+        }
+        return new RequestBody() {
+            @Override
+            public long getContentLength() {
+                return contentLengthKnown ? content.length : -1;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                requestHandler.writeStream(out, content);
+            }
+        };
+    }
+
+    /**
+     * Wraps the body in a {@link GzipRequestBody} and sets the
+     * Content-Encoding header if request compression is enabled and the body
+     * is at least as large as the threshold. Bodies of unknown length are
+     * always compressed when compression is enabled.
+     *
+     * @param urlConnection
+     * @param body
+     * @return The body to send
+     */
+    protected RequestBody compressRequestBody(HttpURLConnection urlConnection, RequestBody body) {
+        if (!shouldCompress(body)) {
+            return body;
+        }
+        urlConnection.setRequestProperty("Content-Encoding", "gzip");
+        return new GzipRequestBody(body);
+    }
+
+    private boolean shouldCompress(RequestBody body) {
+        long threshold = requestCompressionThreshold;
+        if (threshold < 0) {
+            return false;
+        }
+        long length = body.getContentLength();
+        return length < 0 || length >= threshold;
+    }
+
+    /**
+     * Tells {@link HttpURLConnection} to stream the request body instead of
+     * buffering all of it in memory to compute the Content-Length. Known
+     * lengths use fixed-length mode, unknown lengths use chunked transfer
+     * encoding. Must be called before connecting.
+     *
+     * @param urlConnection
+     * @param contentLength Number of bytes to be written or -1 if unknown
+     */
+    protected void setStreamingMode(HttpURLConnection urlConnection, long contentLength) {
+        if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+            urlConnection.setFixedLengthStreamingMode((int) contentLength);
+        } else {
+            // 0 selects the default chunk size
+            urlConnection.setChunkedStreamingMode(0);
+        }
+    }
+
     /**
      * Validates a URL and opens a connection. This does not actually connect
      * to a server, but rather opens it on the client only to allow writing
@@ -266,12 +1195,22 @@ public abstract class AbstractHttpClient {
     }
 
     protected void prepareConnection(HttpURLConnection urlConnection, HttpMethod httpMethod,
-            String contentType) throws IOException {
-        urlConnection.setConnectTimeout(connectionTimeout);
-        urlConnection.setReadTimeout(readTimeout);
+            String contentType, RequestContext context) throws IOException {
+        urlConnection.setConnectTimeout(context.getConnectionTimeout());
+        urlConnection.setReadTimeout(context.getReadTimeout());
         requestHandler.prepareConnection(urlConnection, httpMethod, contentType);
     }
 
+    /**
+     * Creates the context for a new request attempt using this client's
+     * current timeouts.
+     *
+     * @return New context
+     */
+    protected RequestContext newRequestContext() {
+        return new RequestContext(connectionTimeout, readTimeout);
+    }
+
     /**
      * Append all headers added with {@link #addHeader(String, String)} to the
      * request.
@@ -279,9 +1218,8 @@ public abstract class AbstractHttpClient {
      * @param urlConnection
      */
     private void appendRequestHeaders(HttpURLConnection urlConnection) {
-        for (String name : requestHeaders.keySet()) {
-            String value = requestHeaders.get(name);
-            urlConnection.setRequestProperty(name, value);
+        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+            urlConnection.setRequestProperty(header.getKey(), header.getValue());
         }
     }
 
@@ -293,7 +1231,14 @@ public abstract class AbstractHttpClient {
      * @return HTTP status code
      * @throws Exception in order to force calling code to deal with possible
      *             NPEs also
+     * @deprecated No longer called by the client, which writes byte[]
+     *             content as a {@link RequestBody} with
+     *             {@link #writeOutputStream(HttpURLConnection, RequestBody)}.
+     *             Override that method or
+     *             {@link RequestHandler#writeStream(OutputStream, byte[])}
+     *             instead.
      */
+    @Deprecated
     protected int writeOutputStream(HttpURLConnection urlConnection, byte[] content) throws Exception {
         OutputStream out = null;
         try {
@@ -314,6 +1259,46 @@ public abstract class AbstractHttpClient {
         }
     }
 
+    /**
+     * Writes a streamed request body to the server and closes the stream,
+     * which sends the last chunk of a chunked body. Unlike
+     * {@link #writeOutputStream(HttpURLConnection, byte[])}, this does not
+     * wait for the response, so that the end of the write phase can be timed
+     * separately. Opening the stream is delegated to the
+     * {@link RequestHandler}. If the body fails with a
+     * {@link RequestBodyException}, the connection is dropped rather than
+     * the stream closed, since closing would end a chunked body normally and
+     * the server would act on partial content.
+     *
+     * @param urlConnection
+     * @param body to be written
+     * @throws Exception
+     */
+    protected void writeOutputStream(HttpURLConnection urlConnection, RequestBody body) throws Exception {
+        OutputStream out = null;
+        try {
+            out = requestHandler.openOutput(urlConnection);
+            if (out != null) {
+                body.writeTo(out);
+                out.close();
+                out = null;
+            }
+        } catch (RequestBodyException e) {
+            out = null;
+            urlConnection.disconnect();
+            throw e;
+        } finally {
+            // catch not necessary since method throws Exception
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (Exception e) {
+                    // Swallow to show first cause only
+                }
+            }
+        }
+    }
+
     /**
      * Reads the input stream. Delegates I/O to the {@link RequestHandler}.
      *
@@ -328,6 +1313,9 @@ public abstract class AbstractHttpClient {
             in = requestHandler.openInput(urlConnection);
             if (in != null) {
                 responseBody = requestHandler.readStream(in);
+                if (keepAlivePool != null) {
+                    drain(in);
+                }
             }
             return new HttpResponse(urlConnection, responseBody);
         } finally {
@@ -353,9 +1341,12 @@ public abstract class AbstractHttpClient {
         InputStream err = null;
         byte[] responseBody = null;
         try {
-            err = urlConnection.getErrorStream();
+            err = ContentEncoding.decode(urlConnection, urlConnection.getErrorStream());
             if (err != null) {
                 responseBody = requestHandler.readStream(err);
+                if (keepAlivePool != null) {
+                    drain(err);
+                }
             }
             return new HttpResponse(urlConnection, responseBody);
         } finally {
@@ -382,7 +1373,7 @@ public abstract class AbstractHttpClient {
      * Adds to the headers that will be sent with each request from this client
      * instance. The request headers added with this method are applied by
      * calling {@link HttpURLConnection#setRequestProperty(String, String)}
-     * after {@link #prepareConnection(HttpURLConnection, HttpMethod, String)},
+     * after {@link #prepareConnection(HttpURLConnection, HttpMethod, String, RequestContext)},
      * so they may supplement or replace headers which have already been set.
      * Calls to {@link #addHeader(String, String)} may be chained. To clear all
      * headers added with this method, call {@link #clearHeaders()}.
@@ -392,7 +1383,11 @@ public abstract class AbstractHttpClient {
      * @return this client for method chaining
      */
     public AbstractHttpClient addHeader(String name, String value) {
-        requestHeaders.put(name, value);
+        synchronized (this) {
+            Map<String, String> headers = new TreeMap<String, String>(requestHeaders);
+            headers.put(name, value);
+            requestHeaders = Collections.unmodifiableMap(headers);
+        }
         return this;
     }
 
@@ -403,7 +1398,9 @@ public abstract class AbstractHttpClient {
      * {@link RequestHandler} when preparing the {@link HttpURLConnection}.
      */
     public void clearHeaders() {
-        requestHeaders.clear();
+        synchronized (this) {
+            requestHeaders = Collections.emptyMap();
+        }
     }
 
     /**
@@ -415,6 +1412,48 @@ public abstract class AbstractHttpClient {
         return (CookieManager) CookieHandler.getDefault();
     }
 
+    /**
+     * Sets the cache consulted for GET requests made with
+     * {@link #execute(HttpRequest)} and the methods that call it, or null to
+     * disable caching. Fresh responses are served from the cache without a
+     * network request; stale ones are revalidated using If-None-Match and
+     * If-Modified-Since. Streaming requests bypass the cache. The cache may be
+     * shared by several clients, so it follows the rules of a shared cache:
+     * responses marked Cache-Control: private are never stored, and responses
+     * to requests with an Authorization or Cookie header only if marked
+     * public or s-maxage. Cookies sent by a {@link CookieManager} are not
+     * seen by the client, so do not share a cache between users whose
+     * identity is carried that way.
+     *
+     * @param httpCache
+     */
+    public void setHttpCache(HttpCache httpCache) {
+        this.httpCache = httpCache;
+    }
+
+    /**
+     * Sets the coalescer used to share a single exchange among identical GET
+     * and HEAD requests made concurrently through this client, or null to
+     * disable coalescing (the default).
+     *
+     * @param requestCoalescer
+     */
+    public void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * Enables gzip compression of request bodies of at least the given size
+     * in bytes. The server must accept Content-Encoding: gzip and chunked
+     * requests. Disabled by default; pass -1 to disable again. Responses are
+     * decompressed transparently regardless of this setting.
+     *
+     * @param thresholdBytes Minimum body size to compress, or -1
+     */
+    public void setRequestCompressionThreshold(long thresholdBytes) {
+        this.requestCompressionThreshold = thresholdBytes;
+    }
+
     /**
      * Sets the logger to be used for each request.
      *
@@ -424,6 +1463,58 @@ public abstract class AbstractHttpClient {
         this.requestLogger = logger;
     }
 
+    /**
+     * Sets a listener to be notified at each phase of every request, or null
+     * to disable notification (the default). To combine timings across
+     * clients, share one {@link RequestMetrics} among them.
+     *
+     * @param listener
+     */
+    public void setRequestListener(RequestListener listener) {
+        this.requestListener = listener;
+    }
+
+    /**
+     * Sets the transport used to carry out requests, or null to use
+     * {@link HttpURLConnection} through the {@link RequestHandler} (the
+     * default). Streaming requests made with
+     * {@link #executeStream(HttpRequest)} always use
+     * {@link HttpURLConnection}.
+     *
+     * @param transport
+     */
+    public void setTransport(HttpTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Enables keep-alive mode, in which responses are drained and their
+     * streams closed instead of disconnecting, so that the JDK reuses
+     * sockets across requests. Pass null to disconnect after every request
+     * (the default). Share one pool among all clients, and use
+     * {@link KeepAlivePool#getStats()} to confirm that connections are being
+     * reused. Applies to streaming requests, which are reused once read to
+     * the end or closed, and to other requests when no {@link HttpTransport}
+     * is set.
+     *
+     * @param pool
+     */
+    public void setKeepAlivePool(KeepAlivePool pool) {
+        this.keepAlivePool = pool;
+    }
+
+    /**
+     * Sets the breaker that fails requests to a failing host at once
+     * instead of sending them, or null to always send (the default). Share
+     * one breaker among clients that call the same hosts. Responses served
+     * from an {@link HttpCache} are not affected.
+     *
+     * @param circuitBreaker
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
     /**
      * Initialize the app-wide {@link CookieManager}. This is all that's
      * necessary to enable all Web requests within the app to automatically send
@@ -437,22 +1528,23 @@ public abstract class AbstractHttpClient {
 
     /**
      * Determines whether an exception was due to a timeout. If the elapsed time
-     * is longer than the current timeout, the exception is assumed to be the
-     * result of the timeout.
+     * is longer than the timeout that applied to the attempt, the exception is
+     * assumed to be the result of the timeout.
      *
      * @param t Any Throwable
+     * @param context The attempt that threw
      * @return true if caused by connection or read timeout
      */
-    protected boolean isTimeoutException(Throwable t, long startTime) {
-        long elapsedTime = System.currentTimeMillis() - startTime + 10; // fudge
+    protected boolean isTimeoutException(Throwable t, RequestContext context) {
+        long elapsedTime = System.currentTimeMillis() - context.getStartTime() + 10; // fudge
         if (requestLogger.isLoggingEnabled()) {
-            requestLogger.log("ELAPSED TIME = " + elapsedTime + ", CT = " + connectionTimeout
-                    + ", RT = " + readTimeout);
+            requestLogger.log("ELAPSED TIME = " + elapsedTime + ", CT = "
+                    + context.getConnectionTimeout() + ", RT = " + context.getReadTimeout());
         }
-        if (isConnected) {
-            return elapsedTime >= readTimeout;
+        if (context.isConnected()) {
+            return elapsedTime >= context.getReadTimeout();
         } else {
-            return elapsedTime >= connectionTimeout;
+            return elapsedTime >= context.getConnectionTimeout();
         }
     }
 
@@ -1,6 +1,16 @@
 
 package com.turbomanage.httpclient;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An HTTP client that completes all requests asynchronously using
@@ -12,16 +22,23 @@ package com.turbomanage.httpclient;
  */
 public class AsyncHttpClient extends AbstractHttpClient {
 
-    static int[] fib = new int[20]; 
-    static {
-        // Compute Fibonacci series for backoff
-        for (int i=0; i<20; i++) {
-            fib[i] = i<2 ? i : fib[i-2] + fib[i-1];
-        }
-    }
-    
+    private static ScheduledExecutorService defaultRetryScheduler;
+
     // Configurable default
     private int maxRetries = 3;
+    protected volatile RetryPolicy retryPolicy = new BasicRetryPolicy();
+    /**
+     * Runs delayed retries; the shared default if null.
+     */
+    protected volatile ScheduledExecutorService retryScheduler;
+    /**
+     * Hedges slow GET and HEAD requests if set.
+     */
+    protected volatile HedgingPolicy hedgingPolicy;
+    /**
+     * Limits async requests in flight to each host if set.
+     */
+    protected volatile ConcurrencyLimiter concurrencyLimiter;
     /*
      * The factory that will be used to obtain an async wrapper for the
      * request. Usually set in a subclass that provides a platform-specific
@@ -151,18 +168,196 @@ public class AsyncHttpClient extends AbstractHttpClient {
 
     /**
      * Execute an {@link HttpRequest} asynchronously. Uses a factory to obtain a
-     * suitable async wrapper in order to decouple from Android.
+     * suitable async wrapper in order to decouple from Android. If the client
+     * has an {@link AsyncHttpTransport} and neither a cache nor a coalescer,
+     * the request is instead dispatched to the transport with the same retry
+     * rules as {@link #tryMany(HttpRequest)}, and no thread waits for it. The
+     * callback then runs on a transport thread and must not block. With a
+     * {@link ConcurrencyLimiter}, each attempt first waits for a permit for
+     * its host.
      * 
      * @param httpRequest
      * @param callback
      */
     protected void executeAsync(HttpRequest httpRequest, AsyncCallback callback) {
+        send(httpRequest, callback);
+    }
+
+    private void send(HttpRequest httpRequest, AsyncCallback callback) {
+        HedgingPolicy hedging = hedgingPolicy;
+        HttpMethod method = httpRequest.getHttpMethod();
+        // A hedge would only join the primary's exchange in the coalescer
+        if (hedging != null && requestCoalescer == null
+                && (method == HttpMethod.GET || method == HttpMethod.HEAD)) {
+            new Hedge(httpRequest, callback, hedging).start();
+            return;
+        }
+        dispatch(httpRequest, callback);
+    }
+
+    private void dispatch(HttpRequest httpRequest, AsyncCallback callback) {
+        HttpTransport t = transport;
+        if (t instanceof AsyncHttpTransport && httpCache == null && requestCoalescer == null) {
+            new Attempts(httpRequest, callback, (AsyncHttpTransport) t, null).attempt();
+            return;
+        }
         AsyncRequestExecutor executor = execFactory.getAsyncRequestExecutor(this, callback);
         executor.execute(httpRequest);
     }
 
     /**
-     * Tries several times until successful or maxRetries exhausted.
+     * Execute a HEAD request and return a future for the response. The
+     * supplied parameters are URL encoded and sent as the query string.
+     * 
+     * @param path
+     * @param params
+     * @return Future response
+     */
+    public ResponseFuture headAsync(String path, ParameterMap params) {
+        return executeAsync(new HttpHead(path, params));
+    }
+
+    /**
+     * Execute a GET request and return a future for the response. The
+     * supplied parameters are URL encoded and sent as the query string.
+     * 
+     * @param path
+     * @param params
+     * @return Future response
+     */
+    public ResponseFuture getAsync(String path, ParameterMap params) {
+        return executeAsync(new HttpGet(path, params));
+    }
+
+    /**
+     * Execute a POST request with parameter map and return a future for the
+     * response.
+     * 
+     * @param path
+     * @param params
+     * @return Future response
+     */
+    public ResponseFuture postAsync(String path, ParameterMap params) {
+        return executeAsync(new HttpPost(path, params));
+    }
+
+    /**
+     * Execute a POST request with a chunk of data and return a future for the
+     * response.
+     * 
+     * @param path
+     * @param contentType
+     * @param data
+     * @return Future response
+     */
+    public ResponseFuture postAsync(String path, String contentType, byte[] data) {
+        return executeAsync(new HttpPost(path, null, contentType, data));
+    }
+
+    /**
+     * Execute a PUT request with the supplied content and return a future for
+     * the response.
+     * 
+     * @param path
+     * @param contentType
+     * @param data
+     * @return Future response
+     */
+    public ResponseFuture putAsync(String path, String contentType, byte[] data) {
+        return executeAsync(new HttpPut(path, null, contentType, data));
+    }
+
+    /**
+     * Execute a DELETE request and return a future for the response. The
+     * supplied parameters are URL encoded and sent as the query string.
+     * 
+     * @param path
+     * @param params
+     * @return Future response
+     */
+    public ResponseFuture deleteAsync(String path, ParameterMap params) {
+        return executeAsync(new HttpDelete(path, params));
+    }
+
+    /**
+     * Execute an {@link HttpRequest} asynchronously and return a future for
+     * the response. The request runs on the same async wrapper used by the
+     * callback methods, so no thread is blocked while waiting unless the
+     * caller chooses to call {@link ResponseFuture#get()}. Exceptions are
+     * delivered as a failed future.
+     * 
+     * @param httpRequest
+     * @return Future response
+     */
+    public ResponseFuture executeAsync(HttpRequest httpRequest) {
+        final ResponseFuture future = new ResponseFuture();
+        executeAsync(httpRequest, new AsyncCallback() {
+            @Override
+            public void onComplete(HttpResponse httpResponse) {
+                future.complete(httpResponse);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                future.fail(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Executes many requests asynchronously, at most parallelism at a time,
+     * and returns a future for each in the same order. Each request is made
+     * as by {@link #executeAsync(HttpRequest)}, with the same retries and
+     * other settings, and the next one starts when one completes, so no
+     * thread waits for the batch. A failed request fails only its own
+     * future.
+     *
+     * <p>Sample usage:</p>
+     * <pre>
+     *    List&lt;ResponseFuture&gt; futures = httpClient.executeAllAsync(requests, 16);
+     *    for (ResponseFuture future : futures) {
+     *        try {
+     *            HttpResponse res = future.get();
+     *        } catch (ExecutionException e) {
+     *            ...
+     *        }
+     *    }
+     * </pre>
+     *
+     * @param requests
+     * @param parallelism Most requests in flight at once
+     * @return Future responses, in the same order as the requests
+     */
+    public List<ResponseFuture> executeAllAsync(List<? extends HttpRequest> requests,
+            int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        Batch batch = new Batch(requests, parallelism);
+        batch.drain();
+        return batch.futures;
+    }
+
+    /**
+     * Like {@link AbstractHttpClient#doBatchRequest(HttpRequest)}, but
+     * retries as in {@link #tryMany(HttpRequest)}.
+     */
+    @Override
+    protected BatchResult doBatchRequest(HttpRequest httpRequest) {
+        try {
+            return new BatchResult(httpRequest, tryMany(httpRequest), null);
+        } catch (Exception e) {
+            return new BatchResult(httpRequest, null, e);
+        }
+    }
+
+    /**
+     * Tries several times until successful or maxRetries exhausted, as
+     * directed by the {@link RetryPolicy}. Waits between attempts on the
+     * calling thread; the async methods of this client do not. Requests
+     * refused by an open {@link CircuitBreaker}, or whose body fails with a
+     * {@link RequestBodyException}, are not retried.
      * Must throw exception in order for the async process to forward
      * it to the callback's onError method.
      * 
@@ -171,63 +366,613 @@ public class AsyncHttpClient extends AbstractHttpClient {
      * @throws HttpRequestException
      */
     public HttpResponse tryMany(HttpRequest httpRequest) throws HttpRequestException {
-        int numTries = 0;
-        long startTime = System.currentTimeMillis();
-        HttpResponse res = null;
-        while (numTries < maxRetries) {
+        RetryPolicy policy = retryPolicy;
+        policy.onRequest(httpRequest);
+        int maxTries = getMaxTries(httpRequest);
+        long lastDelay = 0;
+        for (int numTries = 0; numTries < maxTries; numTries++) {
+            // Per-attempt timeout, leaves the client's own settings untouched
+            RequestContext context = new RequestContext(getNextTimeout(numTries), readTimeout);
+            boolean lastTry = numTries == maxTries - 1;
+            HttpResponse res = null;
+            HttpRequestException cause;
+            long delay;
             try {
-                setConnectionTimeout(getNextTimeout(numTries));
-                if (requestLogger.isLoggingEnabled()) {
-                    requestLogger.log((numTries+1) + "of" + maxRetries + ", trying " + httpRequest.getPath());
-                }
-                startTime = System.currentTimeMillis();
-                res = doHttpMethod(httpRequest.getPath(),
-                        httpRequest.getHttpMethod(), httpRequest.getContentType(),
-                        httpRequest.getContent());
-                if (res != null) {
+                logAttempt(httpRequest, numTries, maxTries);
+                res = doHttpRequest(httpRequest, context);
+                if (res == null) {
+                    continue;
+                }
+                delay = lastTry ? -1
+                        : policy.getRetryDelay(httpRequest, numTries + 1, lastDelay, res, null,
+                                false);
+                if (delay < 0) {
                     return res;
                 }
+                cause = new HttpRequestException(null, res);
             } catch (HttpRequestException e) {
-                if (isTimeoutException(e, startTime) && numTries < (maxRetries-1)) {
-                    // Fall through loop, retry
-                    // On last attempt, throw the exception regardless
-                } else {
-                    boolean isRecoverable = requestHandler.onError(e);
-                    if (isRecoverable && numTries < (maxRetries-1)) {
-                        try {
-                            // Wait a while and fall through loop to try again
-                            Thread.sleep(connectionTimeout);
-                        } catch (InterruptedException ie) {
-                            // App stopping, perhaps? No point in further retries
-                            throw e;
-                        }
-                    } else {
-                        // Not recoverable or last attempt, time to bail
-                        throw e;
+                if (isFinal(e)) {
+                    throw e;
+                }
+                boolean recoverable = isTimeoutException(e, context) || requestHandler.onError(e);
+                delay = lastTry ? -1
+                        : policy.getRetryDelay(httpRequest, numTries + 1, lastDelay, null, e,
+                                recoverable);
+                if (delay < 0) {
+                    // Not recoverable or last attempt, time to bail
+                    throw e;
+                }
+                cause = e;
+            }
+            notifyRetry(context, numTries, cause);
+            if (delay > 0) {
+                try {
+                    // Wait a while and fall through loop to try again
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    // App stopping, perhaps? No point in further retries
+                    Thread.currentThread().interrupt();
+                    if (res != null) {
+                        return res;
                     }
+                    throw cause;
                 }
             }
-            numTries++;
+            lastDelay = delay;
         }
         return null;
     }
 
     /**
-     * Implements exponential backoff using the Fibonacci series, which
-     * has the effect of backing off with a multiplier of ~1.618
-     * (the golden mean) instead of 2, which is rather boring.
+     * Like {@link #tryMany(HttpRequest)}, but returns after the first
+     * attempt instead of waiting for the next. Retries are scheduled with
+     * the retry scheduler and run on the executor, so no thread is held
+     * during the delay. The outcome is passed to the callback. Call on a
+     * thread of the executor.
+     * 
+     * @param httpRequest
+     * @param executor Runs retries
+     * @param callback
+     */
+    public void tryMany(HttpRequest httpRequest, Executor executor, AsyncCallback callback) {
+        new Attempts(httpRequest, callback, null, executor).attempt();
+    }
+
+    private int getMaxTries(HttpRequest httpRequest) {
+        RequestBody body = httpRequest.getBody();
+        // A body that can only be written once allows only one attempt
+        return (body == null || body.isRepeatable()) ? maxRetries : 1;
+    }
+
+    /**
+     * Whether a failure must not be retried whatever the policy says: the
+     * circuit was open, so nothing was sent and retrying would only wait, or
+     * the request body could not be produced, which would fail alike.
+     */
+    private static boolean isFinal(HttpRequestException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof CircuitOpenException || cause instanceof RequestBodyException;
+    }
+
+    private void logAttempt(HttpRequest httpRequest, int numTries, int maxTries) {
+        if (requestLogger.isLoggingEnabled()) {
+            requestLogger.log((numTries+1) + "of" + maxTries + ", trying " + httpRequest.getPath());
+        }
+    }
+
+    /**
+     * Makes the attempts for one request without waiting between them,
+     * following the same {@link RetryPolicy} as tryMany. Each attempt goes
+     * through an {@link AsyncHttpTransport} or, if none, runs on the calling
+     * thread, with retries resubmitted to an {@link Executor}. With a
+     * {@link ConcurrencyLimiter}, each attempt holds its own permit, which
+     * is returned before waiting to retry.
+     */
+    private class Attempts extends AsyncCallback implements Runnable {
+
+        private final HttpRequest httpRequest;
+        private final AsyncCallback callback;
+        private final AsyncHttpTransport transport;
+        private final Executor executor;
+        private final RetryPolicy policy;
+        private final ConcurrencyLimiter limiter;
+        private final String host;
+        private final int maxTries;
+        private int numTries;
+        private long lastDelay;
+        private long sendTime;
+        private volatile RequestContext context;
+        private volatile ResponseFuture inFlight;
+        private volatile boolean cancelled;
+
+        Attempts(HttpRequest httpRequest, AsyncCallback callback, AsyncHttpTransport transport,
+                Executor executor) {
+            this.httpRequest = httpRequest;
+            this.callback = callback;
+            this.transport = transport;
+            this.executor = executor;
+            this.policy = retryPolicy;
+            this.limiter = concurrencyLimiter;
+            this.host = (limiter == null) ? null
+                    : RequestMetrics.getHost(baseUrl + httpRequest.getPath());
+            this.maxTries = getMaxTries(httpRequest);
+            policy.onRequest(httpRequest);
+            if (callback instanceof Hedge.Leg) {
+                ((Hedge.Leg) callback).setAttempts(this);
+            }
+        }
+
+        void attempt() {
+            if (cancelled) {
+                callback.onError(new CancellationException());
+                return;
+            }
+            if (limiter != null && !limiter.acquire(host, new ConcurrencyLimiter.Waiter() {
+                @Override
+                void run() {
+                    admitted();
+                }
+
+                @Override
+                void reject(ConcurrencyLimitException e) {
+                    callback.onError(new HttpRequestException(e, null));
+                }
+            }, getRetryScheduler())) {
+                return;
+            }
+            send();
+        }
+
+        /**
+         * Sends an attempt that waited for a permit. Runs on the thread of
+         * the attempt that released it, so a blocking attempt is handed to
+         * the executor instead.
+         */
+        private void admitted() {
+            if (executor == null) {
+                send();
+                return;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        send();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                limiter.release(host, -1, false);
+                callback.onError(e);
+            }
+        }
+
+        private void send() {
+            if (cancelled) {
+                if (limiter != null) {
+                    limiter.release(host, -1, false);
+                }
+                callback.onError(new CancellationException());
+                return;
+            }
+            context = new RequestContext(getNextTimeout(numTries), readTimeout);
+            sendTime = System.nanoTime();
+            logAttempt(httpRequest, numTries, maxTries);
+            if (transport != null) {
+                inFlight = doTransportAsync(transport, httpRequest, context);
+                inFlight.addCallback(this);
+                return;
+            }
+            HttpResponse res;
+            try {
+                res = doHttpRequest(httpRequest, context);
+            } catch (HttpRequestException e) {
+                onError(e);
+                return;
+            } catch (RuntimeException e) {
+                releasePermit(null, e);
+                callback.onError(e);
+                return;
+            }
+            onComplete(res);
+        }
+
+        /**
+         * Returns the permit of the attempt that has just ended. Only
+         * responses from the network are timed: a cache hit or a joined
+         * exchange never set the URL on this context, and says nothing
+         * about the load on the host.
+         */
+        private void releasePermit(HttpResponse httpResponse, Exception e) {
+            if (limiter == null) {
+                return;
+            }
+            boolean sent = context.getUrl() != null;
+            if (e != null) {
+                // Only failures of requests that reached the network signal overload
+                boolean dropped = sent && e instanceof HttpRequestException
+                        && !isFinal((HttpRequestException) e);
+                limiter.release(host, -1, dropped);
+                return;
+            }
+            int status = (httpResponse == null) ? 0 : httpResponse.getStatus();
+            limiter.release(host, sent ? System.nanoTime() - sendTime : -1,
+                    sent && (status == 429 || status == 503));
+        }
+
+        /**
+         * Runs on the retry scheduler when a delay has elapsed.
+         */
+        @Override
+        public void run() {
+            if (executor == null) {
+                attempt();
+                return;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        attempt();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                callback.onError(e);
+            }
+        }
+
+        /**
+         * Abandons the attempt in progress and any retries.
+         */
+        void cancel() {
+            cancelled = true;
+            RequestContext c = context;
+            if (c != null) {
+                c.cancel();
+            }
+            ResponseFuture f = inFlight;
+            if (f != null) {
+                f.cancel(true);
+            }
+        }
+
+        @Override
+        public void onComplete(HttpResponse httpResponse) {
+            releasePermit(httpResponse, null);
+            if (httpResponse != null && numTries < maxTries - 1 && !cancelled) {
+                long delay = policy.getRetryDelay(httpRequest, numTries + 1, lastDelay,
+                        httpResponse, null, false);
+                if (delay >= 0) {
+                    retry(new HttpRequestException(null, httpResponse), delay);
+                    return;
+                }
+            }
+            callback.onComplete(httpResponse);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            releasePermit(null, e);
+            if (cancelled) {
+                callback.onError(e);
+                return;
+            }
+            HttpRequestException hre = (HttpRequestException) e;
+            if (isFinal(hre)) {
+                callback.onError(hre);
+                return;
+            }
+            boolean recoverable = isTimeoutException(hre, context) || requestHandler.onError(hre);
+            if (numTries < maxTries - 1) {
+                long delay = policy.getRetryDelay(httpRequest, numTries + 1, lastDelay, null, hre,
+                        recoverable);
+                if (delay >= 0) {
+                    retry(hre, delay);
+                    return;
+                }
+            }
+            callback.onError(hre);
+        }
+
+        private void retry(HttpRequestException cause, long delay) {
+            notifyRetry(context, numTries++, cause);
+            lastDelay = delay;
+            if (delay == 0) {
+                attempt();
+            } else {
+                getRetryScheduler().schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Starts the requests of a batch as earlier ones complete. Only one
+     * thread at a time starts requests, and a completion while it is busy
+     * just leaves it another one to start, so requests that complete at
+     * once do not recurse.
+     */
+    private class Batch {
+
+        private final List<? extends HttpRequest> requests;
+        final List<ResponseFuture> futures;
+        /**
+         * Requests that may be started, one per free slot.
+         */
+        private final AtomicInteger credits;
+        private final AtomicInteger wip = new AtomicInteger();
+        /**
+         * Guarded by wip.
+         */
+        private int next;
+
+        Batch(List<? extends HttpRequest> requests, int parallelism) {
+            this.requests = requests;
+            this.futures = new ArrayList<ResponseFuture>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                futures.add(new ResponseFuture());
+            }
+            this.credits = new AtomicInteger(parallelism);
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (next < requests.size() && credits.get() > 0) {
+                    credits.decrementAndGet();
+                    final ResponseFuture future = futures.get(next);
+                    HttpRequest httpRequest = requests.get(next++);
+                    AsyncCallback callback = new AsyncCallback() {
+                        @Override
+                        public void onComplete(HttpResponse httpResponse) {
+                            future.complete(httpResponse);
+                            completed();
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            future.fail(e);
+                            completed();
+                        }
+                    };
+                    try {
+                        executeAsync(httpRequest, callback);
+                    } catch (RuntimeException e) {
+                        if (!future.isDone()) {
+                            callback.onError(e);
+                        }
+                    }
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void completed() {
+            credits.incrementAndGet();
+            drain();
+        }
+    }
+
+    /**
+     * Runs a request and, if it is slow, an identical hedge, passing the
+     * first response to the callback and cancelling the other request. An
+     * error is passed on only once neither request can still succeed.
+     */
+    private class Hedge implements Runnable {
+
+        private final HttpRequest httpRequest;
+        private final AsyncCallback callback;
+        private final HedgingPolicy policy;
+        private Leg primary;
+        private Leg hedge;
+        private int pending;
+        private boolean done;
+
+        Hedge(HttpRequest httpRequest, AsyncCallback callback, HedgingPolicy policy) {
+            this.httpRequest = httpRequest;
+            this.callback = callback;
+            this.policy = policy;
+        }
+
+        void start() {
+            policy.onRequest();
+            synchronized (this) {
+                primary = new Leg();
+                pending = 1;
+            }
+            getRetryScheduler().schedule(this, policy.getHedgeDelay(), TimeUnit.MILLISECONDS);
+            dispatch(httpRequest, primary);
+        }
+
+        /**
+         * Runs on the retry scheduler when the hedge delay has elapsed.
+         */
+        @Override
+        public void run() {
+            Leg leg;
+            synchronized (this) {
+                if (done || !policy.tryHedge()) {
+                    return;
+                }
+                leg = hedge = new Leg();
+                pending++;
+            }
+            dispatch(httpRequest, leg);
+        }
+
+        private void completed(Leg leg, HttpResponse httpResponse) {
+            Leg first;
+            Leg other;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                first = primary;
+                other = (leg == primary) ? hedge : primary;
+            }
+            if (other != null) {
+                other.cancel();
+            }
+            // Time the primary has taken, so that the delay follows
+            // unhedged latency rather than the faster of two requests
+            policy.recordResponse((System.nanoTime() - first.startTime) / 1000, leg != first);
+            callback.onComplete(httpResponse);
+        }
+
+        private void failed(Exception e) {
+            synchronized (this) {
+                if (done || --pending > 0) {
+                    // The other request may yet succeed
+                    return;
+                }
+                done = true;
+            }
+            callback.onError(e);
+        }
+
+        /**
+         * Callback for one of the two requests.
+         */
+        class Leg extends AsyncCallback {
+
+            final long startTime = System.nanoTime();
+            private Attempts attempts;
+            private boolean cancelled;
+
+            synchronized void setAttempts(Attempts attempts) {
+                this.attempts = attempts;
+                if (cancelled) {
+                    attempts.cancel();
+                }
+            }
+
+            void cancel() {
+                Attempts a;
+                synchronized (this) {
+                    cancelled = true;
+                    a = attempts;
+                }
+                if (a != null) {
+                    a.cancel();
+                }
+            }
+
+            @Override
+            public void onComplete(HttpResponse httpResponse) {
+                completed(this, httpResponse);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                failed(e);
+            }
+        }
+    }
+
+    private ScheduledExecutorService getRetryScheduler() {
+        ScheduledExecutorService scheduler = retryScheduler;
+        return (scheduler != null) ? scheduler : getDefaultRetryScheduler();
+    }
+
+    /**
+     * Returns the shared thread used to delay retries, which only starts
+     * attempts and never waits on one.
+     *
+     * @return Scheduler
+     */
+    static synchronized ScheduledExecutorService getDefaultRetryScheduler() {
+        if (defaultRetryScheduler == null) {
+            defaultRetryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "http-client-retry");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return defaultRetryScheduler;
+    }
+
+    private void notifyRetry(RequestContext context, int numTries, HttpRequestException e) {
+        RequestListener listener = requestListener;
+        if (listener != null) {
+            listener.onRetry(context, numTries + 1, e);
+        }
+    }
+
+    /**
+     * Returns the connection timeout for an attempt, as given by the
+     * {@link RetryPolicy}.
      * 
      * @param numTries Current number of attempts completed
      * @return Connection timeout in ms for next attempt
      */
     protected int getNextTimeout(int numTries) {
-        // For n=0,1,2,3 returns 1000,2000,3000,5000
-        return 1000 * fib[numTries + 2];
+        return retryPolicy.getConnectionTimeout(numTries);
+    }
+
+    /**
+     * Sets the policy that decides which failed requests are retried and
+     * when. Default {@link BasicRetryPolicy}. Share one policy, or one
+     * {@link RetryBudget}, among clients to limit their retries together.
+     *
+     * @param retryPolicy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("retryPolicy must not be null");
+        }
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Enables hedging of async GET and HEAD requests, or disables it if
+     * null (the default). Hedges are started on the retry scheduler, so the
+     * {@link AsyncRequestExecutorFactory} must accept requests from any
+     * thread, as {@link ExecutorServiceFactory} does. Requests are not
+     * hedged while a {@link RequestCoalescer} is set, since the hedge would
+     * share the exchange of the slow request.
+     *
+     * @param hedgingPolicy
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Limits the async requests in flight to each host, adapting the limit
+     * to latency, or removes the limit if null (the default). Each attempt,
+     * including retries and hedges, holds a permit while it is sent, and
+     * only responses from the network are timed. Attempts over the limit
+     * wait in a bounded queue and are started as others complete; requests
+     * that wait too long are failed on the retry scheduler. Applies to
+     * requests made through {@link ExecutorServiceFactory} or an
+     * {@link AsyncHttpTransport}. Share one limiter among clients that call
+     * the same hosts.
+     *
+     * @param concurrencyLimiter
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Sets the scheduler on which async requests wait to be retried, or null
+     * for a shared daemon thread (the default). Scheduled tasks only start
+     * the next attempt, or fail a request that waited too long for the
+     * {@link ConcurrencyLimiter}.
+     *
+     * @param retryScheduler
+     */
+    public void setRetryScheduler(ScheduledExecutorService retryScheduler) {
+        this.retryScheduler = retryScheduler;
     }
 
     /**
      * Set maximum number of retries to attempt, capped at 18. On the
-     * 18th retry, the connection timeout will be 4,181 sec = 1 hr 9 min.
+     * 18th retry, the {@link BasicRetryPolicy} connection timeout will be
+     * 4,181 sec = 1 hr 9 min.
      * 
      * @param maxRetries
      */
@@ -0,0 +1,30 @@
+package com.turbomanage.httpclient;
+
+import java.util.Map;
+
+/**
+ * An {@link HttpTransport} that can execute requests without blocking the
+ * calling thread. When an {@link AsyncHttpClient} is given one, its async
+ * methods dispatch straight to the transport instead of occupying a thread
+ * per request.
+ *
+ * @author David M. Chandler
+ */
+public interface AsyncHttpTransport extends HttpTransport {
+
+    /**
+     * Starts a request and returns immediately. The future is completed with
+     * the response, or failed with the IOException that prevented one,
+     * typically on a thread belonging to the transport.
+     *
+     * @param httpMethod Request method
+     * @param url Absolute URL including the query string
+     * @param headers Request headers, including Content-Type if any
+     * @param body Request data, may be null
+     * @param context Timeouts and state of this attempt
+     * @param future Completed when the exchange ends
+     */
+    void executeAsync(HttpMethod httpMethod, String url, Map<String, String> headers,
+            RequestBody body, RequestContext context, ResponseFuture future);
+
+}
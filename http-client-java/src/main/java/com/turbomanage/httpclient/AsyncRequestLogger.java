@@ -0,0 +1,359 @@
+package com.turbomanage.httpclient;
+
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link RequestLogger} that keeps logging off the request path. Request
+ * threads capture only what they must (method, URL, headers and the first
+ * {@link #setMaxBodyLength(int)} bytes of the response body) and hand it to a
+ * single background thread through a bounded lock-free {@link RingBuffer};
+ * formatting and output happen there. When the buffer is full, records are
+ * dropped and counted rather than blocking the request. One request in
+ * {@link #setSampleInterval(int)} is logged together with its response. The
+ * decision is kept on the {@link RequestContext}, so it holds even when the
+ * response completes on another thread; clients call the methods that take
+ * a context.
+ *
+ * <p>When disabled with {@link #setEnabled(boolean)}, the client's
+ * {@link #isLoggingEnabled()} check is the only cost. The background thread is
+ * a daemon started on first use.</p>
+ *
+ * <p>Output goes to System.out by default; override {@link #write(String)}
+ * to send it elsewhere.</p>
+ *
+ * @author David M. Chandler
+ */
+public class AsyncRequestLogger implements RequestLogger {
+
+    private static final AsyncRequestLogger DEFAULT = new AsyncRequestLogger();
+
+    private static final int REQUEST = 0;
+    private static final int RESPONSE = 1;
+    private static final int MESSAGE = 2;
+
+    private final RingBuffer<Record> buffer;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean enabled = true;
+    private volatile int sampleInterval = 1;
+    private volatile int maxBodyLength = 1024;
+    private volatile Thread writer;
+    private volatile boolean waiting;
+    private volatile boolean closed;
+
+    /**
+     * Returns the logger shared by clients and handlers that were not given
+     * one.
+     *
+     * @return Shared instance
+     */
+    public static AsyncRequestLogger getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Constructs a logger with room for 1024 records.
+     */
+    public AsyncRequestLogger() {
+        this(1024);
+    }
+
+    /**
+     * Constructs a logger.
+     *
+     * @param capacity Records waiting to be written, beyond which new ones
+     *            are dropped
+     */
+    public AsyncRequestLogger(int capacity) {
+        this.buffer = new RingBuffer<Record>(capacity);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.turbomanage.httpclient.RequestLogger#isLoggingEnabled()
+     */
+    @Override
+    public boolean isLoggingEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns logging on or off.
+     *
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Logs one request in every n, together with its response. Default 1.
+     *
+     * @param n
+     */
+    public void setSampleInterval(int n) {
+        this.sampleInterval = Math.max(n, 1);
+    }
+
+    /**
+     * Sets the number of bytes of each response body to log, or 0 to
+     * log no bodies. Default 1024.
+     *
+     * @param maxBodyLength
+     */
+    public void setMaxBodyLength(int maxBodyLength) {
+        this.maxBodyLength = Math.max(maxBodyLength, 0);
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of records discarded because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /* (non-Javadoc)
+     * @see com.turbomanage.httpclient.RequestLogger#log(java.lang.String)
+     */
+    @Override
+    public void log(String msg) {
+        enqueue(new Record(MESSAGE, msg, null));
+    }
+
+    /**
+     * Logs the request if sampled. Without a context, the response cannot
+     * be matched to it and is sampled on its own.
+     *
+     * @see com.turbomanage.httpclient.RequestLogger#logRequest(java.net.HttpURLConnection, java.lang.Object)
+     */
+    @Override
+    public void logRequest(HttpURLConnection uc, Object content) {
+        logRequest(uc, content, null);
+    }
+
+    /**
+     * Decides whether this request is sampled, records the decision on the
+     * context and, if sampled, captures its headers now, since they cannot
+     * be read once the connection is open.
+     *
+     * @param uc
+     * @param content
+     * @param context The attempt, may be null
+     */
+    public void logRequest(HttpURLConnection uc, Object content, RequestContext context) {
+        if (sample(context)) {
+            String line = uc.getRequestMethod() + " " + uc.getURL();
+            if (content instanceof String) {
+                line += "\nContent: " + content;
+            }
+            enqueue(new Record(REQUEST, line, uc.getRequestProperties()));
+        }
+    }
+
+    /**
+     * Like {@link #logRequest(HttpURLConnection, Object, RequestContext)},
+     * for requests sent through an {@link HttpTransport}, which have no
+     * connection to describe them.
+     *
+     * @param line Method and URL
+     * @param context The attempt
+     */
+    public void logRequest(String line, RequestContext context) {
+        if (sample(context)) {
+            enqueue(new Record(MESSAGE, line, null));
+        }
+    }
+
+    /**
+     * Logs the response, sampled on its own.
+     *
+     * @see com.turbomanage.httpclient.RequestLogger#logResponse(com.turbomanage.httpclient.HttpResponse)
+     */
+    @Override
+    public void logResponse(HttpResponse res) {
+        logResponse(res, null);
+    }
+
+    /**
+     * Logs the response if its request was sampled. Only the part of the
+     * body that will be shown is copied, so queued records never hold whole
+     * responses; it is decoded on the background thread.
+     *
+     * @param res Response, may be null
+     * @param context The attempt, may be null
+     */
+    public void logResponse(HttpResponse res, RequestContext context) {
+        Boolean sampled = (context == null) ? null : context.getLogSampled();
+        boolean sample = (sampled == null) ? nextSample() : sampled.booleanValue();
+        if (res == null || !sample) {
+            return;
+        }
+        Record record = new Record(RESPONSE, res.getUrl(), res.getHeaders());
+        record.status = res.getStatus();
+        byte[] body = res.getBody();
+        int max = maxBodyLength;
+        if (max > 0 && body != null) {
+            record.body = (body.length <= max) ? body : Arrays.copyOf(body, max);
+            record.bodyLength = body.length;
+        }
+        enqueue(record);
+    }
+
+    private boolean sample(RequestContext context) {
+        boolean sample = nextSample();
+        if (context != null) {
+            context.setLogSampled(sample);
+        }
+        return sample;
+    }
+
+    private boolean nextSample() {
+        int interval = sampleInterval;
+        return interval == 1 || sequence.getAndIncrement() % interval == 0;
+    }
+
+    /**
+     * Writes a formatted record. Called on the background thread only.
+     *
+     * @param record One or more lines
+     */
+    protected void write(String record) {
+        System.out.println(record);
+    }
+
+    /**
+     * Stops the background thread after writing the records already queued.
+     * Records logged afterwards are dropped.
+     */
+    public void close() {
+        closed = true;
+        Thread t = writer;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private void enqueue(Record record) {
+        if (closed || !buffer.offer(record)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        Thread t = writer;
+        if (t == null) {
+            t = startWriter();
+        }
+        if (waiting) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private synchronized Thread startWriter() {
+        if (writer == null) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, "http-client-logger");
+            t.setDaemon(true);
+            t.start();
+            writer = t;
+        }
+        return writer;
+    }
+
+    private void drain() {
+        while (true) {
+            Record record = buffer.poll();
+            if (record == null) {
+                if (closed) {
+                    return;
+                }
+                waiting = true;
+                // Recheck so that an offer made before waiting was set is seen
+                record = buffer.poll();
+                if (record == null) {
+                    LockSupport.parkNanos(this, 100000000L);
+                }
+                waiting = false;
+            }
+            if (record != null) {
+                try {
+                    write(format(record));
+                } catch (RuntimeException e) {
+                    // Never let a bad record stop logging
+                }
+            }
+        }
+    }
+
+    private String format(Record record) {
+        StringBuilder sb = new StringBuilder();
+        switch (record.type) {
+        case REQUEST:
+            sb.append("=== HTTP Request ===\n").append(record.line);
+            appendHeaders(sb, record.headers);
+            break;
+        case RESPONSE:
+            sb.append("=== HTTP Response ===\nReceive url: ").append(record.line)
+                    .append("\nStatus: ").append(record.status);
+            appendHeaders(sb, record.headers);
+            byte[] body = record.body;
+            if (body != null) {
+                sb.append("\nContent:\n");
+                try {
+                    sb.append(new String(body, RequestHandler.UTF8));
+                } catch (UnsupportedEncodingException e) {
+                    // UTF-8 is always supported
+                }
+                if (body.length < record.bodyLength) {
+                    sb.append("... (").append(record.bodyLength).append(" bytes)");
+                }
+            }
+            break;
+        default:
+            sb.append(record.line);
+        }
+        return sb.toString();
+    }
+
+    private static void appendHeaders(StringBuilder sb, Map<String, List<String>> map) {
+        if (map != null) {
+            for (Map.Entry<String, List<String>> field : map.entrySet()) {
+                for (String header : field.getValue()) {
+                    sb.append('\n').append(field.getKey()).append(':').append(header);
+                }
+            }
+        }
+    }
+
+    private static class Record {
+        final int type;
+        /**
+         * Message, request line, or URL of a response.
+         */
+        final String line;
+        final Map<String, List<String>> headers;
+        int status;
+        /**
+         * At most maxBodyLength bytes of the response body.
+         */
+        byte[] body;
+        int bodyLength;
+
+        Record(int type, String line, Map<String, List<String>> headers) {
+            this.type = type;
+            this.line = line;
+            this.headers = headers;
+        }
+    }
+
+}
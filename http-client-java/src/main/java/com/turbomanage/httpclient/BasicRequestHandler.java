@@ -7,11 +7,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Arrays;
 
 /**
- * Default {@link RequestHandler} used by {@link BasicHttpClient}. It is
- * intended to be used for simple requests with small amounts of data only (a
- * few kB), as it does no buffering, chunking, streaming, etc. Only character
+ * Default {@link RequestHandler} used by {@link BasicHttpClient}. It reads
+ * each response fully into memory, so for large downloads use
+ * {@link AbstractHttpClient#executeStream(HttpRequest)} instead. Responses
+ * compressed with gzip or deflate are decoded transparently. Only character
  * set supported is UTF-8. Only {@link String} content is supported. All
  * responses are treated as {@link String}s. This class is abstract so that
  * it can be easily extended in an anonymous inner class when constructing
@@ -21,13 +23,31 @@ import java.net.URL;
  */
 public abstract class BasicRequestHandler implements RequestHandler {
 
+    /**
+     * Size of the per-thread scratch buffer. Bodies of unknown length that
+     * fit are copied exactly once.
+     */
+    static final int SCRATCH_SIZE = 16384;
+    /**
+     * Largest Content-Length trusted for presizing the result array. Larger
+     * responses are read into a growing buffer as usual.
+     */
+    static final int MAX_PRESIZE = 16 * 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[SCRATCH_SIZE];
+        }
+    };
+
     private final RequestLogger logger;
 
     /**
-     * Constructs a handler with default logger.
+     * Constructs a handler with the shared {@link AsyncRequestLogger}.
      */
     public BasicRequestHandler() {
-        this(new ConsoleRequestLogger());
+        this(AsyncRequestLogger.getDefault());
     }
 
     /**
@@ -58,6 +78,8 @@ public abstract class BasicRequestHandler implements RequestHandler {
         }
         // Set additional properties
         urlConnection.setRequestProperty("Accept-Charset", UTF8);
+        // Responses are decoded in openInput
+        urlConnection.setRequestProperty("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING);
     }
 
     @Override
@@ -74,22 +96,95 @@ public abstract class BasicRequestHandler implements RequestHandler {
     @Override
     public InputStream openInput(HttpURLConnection urlConnection)
     		throws IOException {
-    		return urlConnection.getInputStream();
+    		InputStream in = urlConnection.getInputStream();
+    		if (ContentEncoding.isEncoded(urlConnection)) {
+    		    return ContentEncoding.decode(urlConnection, in);
+    		}
+    		return new ContentLengthInputStream(in, urlConnection.getContentLength());
     }
 
+    /**
+     * Reads the whole stream into a byte[] with as little copying as
+     * possible. When the Content-Length is known, the result array is
+     * allocated once and filled directly. Otherwise the body is read into a
+     * per-thread scratch buffer and copied out once if it fits, spilling to a
+     * growing buffer only for larger bodies.
+     *
+     * @see com.turbomanage.httpclient.RequestHandler#readStream(java.io.InputStream)
+     */
     @Override
     public byte[] readStream(InputStream in) throws IOException {
+        int contentLength = -1;
+        if (in instanceof ContentLengthInputStream) {
+            contentLength = ((ContentLengthInputStream) in).getContentLength();
+        }
+        if (contentLength >= 0 && contentLength <= MAX_PRESIZE) {
+            return readFully(in, contentLength);
+        }
+
+        // Small-body fast path: fill the scratch buffer and copy out once
+        byte[] data = scratch.get();
+        int count = fill(in, data);
+        if (count < data.length) {
+            return Arrays.copyOf(data, count);
+        }
+        return spill(in, data, count);
+    }
+
+    /**
+     * Reads a body of known length into an exactly sized array.
+     */
+    private byte[] readFully(InputStream in, int contentLength) throws IOException {
+        byte[] body = new byte[contentLength];
+        int count = fill(in, body);
+        if (count < contentLength) {
+            // Connection closed early, return what we got
+            return Arrays.copyOf(body, count);
+        }
+        int next = in.read();
+        if (next == -1) {
+            return body;
+        }
+        // More data than advertised, fall back to buffering the rest
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(contentLength + SCRATCH_SIZE);
+        buffer.write(body, 0, contentLength);
+        buffer.write(next);
+        byte[] data = scratch.get();
         int nRead;
-        byte[] data = new byte[16384];
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        while ((nRead = in.read(data)) != -1) {
+            buffer.write(data, 0, nRead);
+        }
+        return buffer.toByteArray();
+    }
 
+    /**
+     * Copies the first count bytes of data and the rest of the stream into a
+     * growing buffer.
+     */
+    private byte[] spill(InputStream in, byte[] data, int count) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(count * 2);
+        buffer.write(data, 0, count);
+        int nRead;
         while ((nRead = in.read(data)) != -1) {
             buffer.write(data, 0, nRead);
         }
-        buffer.flush();
         return buffer.toByteArray();
     }
 
+    /**
+     * Reads until the array is full or the stream ends.
+     *
+     * @return Number of bytes in the array
+     */
+    private static int fill(InputStream in, byte[] data) throws IOException {
+        int count = 0;
+        int nRead;
+        while (count < data.length && (nRead = in.read(data, count, data.length - count)) != -1) {
+            count += nRead;
+        }
+        return count;
+    }
+
     @Override
     public boolean onError(HttpRequestException e) {
         HttpResponse res = e.getHttpResponse();
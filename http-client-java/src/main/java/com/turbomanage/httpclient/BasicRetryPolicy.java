@@ -0,0 +1,227 @@
+package com.turbomanage.httpclient;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Default {@link RetryPolicy}. Connection timeouts grow along the Fibonacci
+ * series, and retries wait for a decorrelated-jitter delay: a random time
+ * between the base delay and three times the previous delay, capped at the
+ * maximum. Clients that failed together therefore retry at different
+ * times instead of all at once. Retries are also limited by a
+ * {@link RetryBudget}.
+ *
+ * <p>Exceptions are retried when the {@link RequestHandler} reports them as
+ * recoverable or the attempt timed out, unless a rule added with
+ * {@link #retryOnException(Class, boolean)} says otherwise. Responses are
+ * retried only for the statuses given to {@link #retryOnStatus(int...)},
+ * and a Retry-After header lengthens the delay.</p>
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    BasicRetryPolicy policy = new BasicRetryPolicy();
+ *    policy.retryOnStatus(429, 503);
+ *    policy.retryOnException(ConnectException.class, true);
+ *    httpClient.setRetryPolicy(policy);
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public class BasicRetryPolicy implements RetryPolicy {
+
+    private static final int[] FIB = new int[20];
+    static {
+        // Compute Fibonacci series for backoff
+        for (int i = 0; i < FIB.length; i++) {
+            FIB[i] = i < 2 ? i : FIB[i - 2] + FIB[i - 1];
+        }
+    }
+
+    private final Random random = new Random();
+    private volatile long baseDelay = 1000;
+    private volatile long maxDelay = 30000;
+    private volatile RetryBudget retryBudget = new RetryBudget(0.2, 10);
+    /**
+     * Immutable snapshots, replaced on every change.
+     */
+    private volatile Set<Integer> retryStatuses = Collections.emptySet();
+    private volatile Map<Class<? extends Throwable>, Boolean> exceptionRules =
+            Collections.emptyMap();
+
+    @Override
+    public void onRequest(HttpRequest httpRequest) {
+        RetryBudget budget = retryBudget;
+        if (budget != null) {
+            budget.onRequest();
+        }
+    }
+
+    /**
+     * Implements exponential backoff using the Fibonacci series, which
+     * has the effect of backing off with a multiplier of ~1.618
+     * (the golden mean) instead of 2, which is rather boring.
+     *
+     * @see com.turbomanage.httpclient.RetryPolicy#getConnectionTimeout(int)
+     */
+    @Override
+    public int getConnectionTimeout(int attempt) {
+        // For n=0,1,2,3 returns 1000,2000,3000,5000
+        return 1000 * FIB[Math.min(attempt, FIB.length - 3) + 2];
+    }
+
+    @Override
+    public long getRetryDelay(HttpRequest httpRequest, int attempt, long lastDelay,
+            HttpResponse httpResponse, HttpRequestException e, boolean recoverable) {
+        long minDelay = 0;
+        if (e != null) {
+            Boolean rule = findRule(e);
+            if (!(rule != null ? rule : recoverable)) {
+                return -1;
+            }
+        } else if (httpResponse != null && retryStatuses.contains(httpResponse.getStatus())) {
+            minDelay = getRetryAfter(httpResponse);
+        } else {
+            return -1;
+        }
+        RetryBudget budget = retryBudget;
+        if (budget != null && !budget.tryRetry()) {
+            return -1;
+        }
+        return Math.min(Math.max(nextDelay(lastDelay), minDelay), maxDelay);
+    }
+
+    /**
+     * Picks the delay before the next attempt.
+     *
+     * @param lastDelay Previous delay in ms, 0 after the first attempt
+     * @return Random delay between the base delay and three times the last
+     */
+    protected long nextDelay(long lastDelay) {
+        long base = baseDelay;
+        long upper = Math.max(lastDelay * 3, base);
+        long delay = base;
+        if (upper > base) {
+            synchronized (random) {
+                delay += (long) (random.nextDouble() * (upper - base));
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Finds the first rule matching the exception or any of its causes.
+     */
+    private Boolean findRule(HttpRequestException e) {
+        Map<Class<? extends Throwable>, Boolean> rules = exceptionRules;
+        if (rules.isEmpty()) {
+            return null;
+        }
+        for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+            for (Map.Entry<Class<? extends Throwable>, Boolean> rule : rules.entrySet()) {
+                if (rule.getKey().isInstance(t)) {
+                    return rule.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a Retry-After header given in seconds.
+     *
+     * @return Delay in ms, or 0 if absent or given as a date
+     */
+    private static long getRetryAfter(HttpResponse httpResponse) {
+        String value = httpResponse.getHeader("Retry-After");
+        if (value != null) {
+            try {
+                return Math.max(Long.parseLong(value.trim()), 0) * 1000;
+            } catch (NumberFormatException e) {
+                // An HTTP date, the jittered delay will do
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Retries responses with any of the given statuses, such as 429 and 503,
+     * replacing any set before. No statuses are retried by default. Note
+     * that a POST is then retried as well.
+     *
+     * @param statuses HTTP status codes
+     * @return this policy
+     */
+    public BasicRetryPolicy retryOnStatus(int... statuses) {
+        Set<Integer> set = new HashSet<Integer>();
+        for (int status : statuses) {
+            set.add(status);
+        }
+        retryStatuses = Collections.unmodifiableSet(set);
+        return this;
+    }
+
+    /**
+     * Adds a rule for exceptions of the given type, which is matched against
+     * the cause of the {@link HttpRequestException} and its own causes. The
+     * rule overrides the {@link RequestHandler}; rules are tried in the order
+     * added.
+     *
+     * @param type Exception class, e.g. ConnectException
+     * @param retry true to retry, false never to retry
+     * @return this policy
+     */
+    public synchronized BasicRetryPolicy retryOnException(Class<? extends Throwable> type,
+            boolean retry) {
+        Map<Class<? extends Throwable>, Boolean> rules =
+                new LinkedHashMap<Class<? extends Throwable>, Boolean>(exceptionRules);
+        rules.put(type, retry);
+        exceptionRules = Collections.unmodifiableMap(rules);
+        return this;
+    }
+
+    public long getBaseDelay() {
+        return baseDelay;
+    }
+
+    /**
+     * Sets the shortest delay before a retry. Default 1 second.
+     *
+     * @param baseDelay in ms
+     */
+    public void setBaseDelay(long baseDelay) {
+        this.baseDelay = Math.max(baseDelay, 0);
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * Sets the longest delay before a retry, including one requested by a
+     * Retry-After header. Default 30 seconds.
+     *
+     * @param maxDelay in ms
+     */
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = Math.max(maxDelay, 0);
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Sets the budget that limits retries, or null for no limit. Default 20%
+     * of requests plus 10 retries per second.
+     *
+     * @param retryBudget
+     */
+    public void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.turbomanage.httpclient;
+
+/**
+ * The outcome of one request made with
+ * {@link AbstractHttpClient#executeAll(java.util.List, int)}: either the
+ * response or the exception that prevented one. A failed request does not
+ * affect the others in the batch.
+ *
+ * @author David M. Chandler
+ */
+public class BatchResult {
+
+    private final HttpRequest httpRequest;
+    private final HttpResponse httpResponse;
+    private final Exception exception;
+
+    /**
+     * Constructs a result.
+     *
+     * @param httpRequest
+     * @param httpResponse may be null
+     * @param exception null if the request completed
+     */
+    public BatchResult(HttpRequest httpRequest, HttpResponse httpResponse, Exception exception) {
+        this.httpRequest = httpRequest;
+        this.httpResponse = httpResponse;
+        this.exception = exception;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return The request at the same position in the batch
+     */
+    public HttpRequest getHttpRequest() {
+        return httpRequest;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Response, which may have an error status, or null if the
+     *         request failed
+     */
+    public HttpResponse getHttpResponse() {
+        return httpResponse;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return The exception thrown by the request, usually an
+     *         {@link HttpRequestException}, or null if it completed
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * Indicates whether the request completed. A completed request may
+     * still have an error status such as 404.
+     *
+     * @return true if a response was received
+     */
+    public boolean isSuccess() {
+        return exception == null && httpResponse != null;
+    }
+
+}
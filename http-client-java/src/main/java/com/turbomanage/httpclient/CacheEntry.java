@@ -0,0 +1,339 @@
+package com.turbomanage.httpclient;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A response held in an {@link HttpCache} together with the information
+ * needed to decide whether it is still fresh, following the shared cache
+ * rules of RFC 7234: Cache-Control s-maxage, max-age, no-cache and private,
+ * Expires, Date and Age. Because an {@link HttpCache} may be shared by
+ * several clients and persisted, responses to requests that carry
+ * credentials are stored only when the server allows it with Cache-Control
+ * public or s-maxage. Stale entries that carry an ETag or Last-Modified
+ * validator can be revalidated with a conditional request. Instances are
+ * immutable.
+ *
+ * @author David M. Chandler
+ */
+public class CacheEntry {
+
+    private static final String HTTP_DATE = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final int status;
+    private final String url;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final long requestTime;
+    private final long responseTime;
+    private final long size;
+
+    /**
+     * Constructs an entry from a response received over the network.
+     *
+     * @param httpResponse
+     * @param requestTime When the request was sent, in ms since the epoch
+     * @param responseTime When the response was received, in ms since the epoch
+     */
+    public CacheEntry(HttpResponse httpResponse, long requestTime, long responseTime) {
+        this(httpResponse.getStatus(), httpResponse.getUrl(), httpResponse.getHeaders(),
+                httpResponse.getBody(), requestTime, responseTime);
+    }
+
+    /**
+     * Constructs an entry from its parts, as when loading it from storage.
+     *
+     * @param status
+     * @param url
+     * @param headers
+     * @param body
+     * @param requestTime When the request was sent, in ms since the epoch
+     * @param responseTime When the response was received, in ms since the epoch
+     */
+    public CacheEntry(int status, String url, Map<String, List<String>> headers, byte[] body,
+            long requestTime, long responseTime) {
+        this.status = status;
+        this.url = url;
+        this.headers = (headers == null) ? Collections.<String, List<String>> emptyMap()
+                : headers;
+        this.body = body;
+        this.requestTime = requestTime;
+        this.responseTime = responseTime;
+        this.size = estimateSize();
+    }
+
+    /**
+     * Determines whether a response to a request without credentials may be
+     * stored.
+     *
+     * @param httpResponse
+     * @return true if the response may be cached
+     * @see #isCacheable(HttpResponse, boolean)
+     */
+    public static boolean isCacheable(HttpResponse httpResponse) {
+        return isCacheable(httpResponse, false);
+    }
+
+    /**
+     * Determines whether a response may be stored. Only complete 200
+     * responses without Cache-Control: no-store or private or a Vary header
+     * qualify, and only if they are fresh for some time or can be
+     * revalidated. If the request carried an Authorization or Cookie header,
+     * the response must also be marked public or s-maxage, as RFC 7234
+     * section 3.2 requires of shared caches.
+     *
+     * @param httpResponse
+     * @param credentialed true if the request carried credentials
+     * @return true if the response may be cached
+     */
+    public static boolean isCacheable(HttpResponse httpResponse, boolean credentialed) {
+        if (httpResponse.getStatus() != 200 || httpResponse.getBody() == null) {
+            return false;
+        }
+        String cacheControl = httpResponse.getHeader("Cache-Control");
+        if (hasDirective(cacheControl, "no-store") || hasDirective(cacheControl, "private")) {
+            return false;
+        }
+        if (credentialed && !hasDirective(cacheControl, "public")
+                && !hasDirective(cacheControl, "s-maxage")) {
+            return false;
+        }
+        String vary = httpResponse.getHeader("Vary");
+        if (vary != null && !vary.trim().equalsIgnoreCase("Accept-Encoding")) {
+            return false;
+        }
+        return getDirective(cacheControl, "max-age") != null
+                || getDirective(cacheControl, "s-maxage") != null
+                || httpResponse.getHeader("Expires") != null
+                || httpResponse.getHeader("ETag") != null
+                || httpResponse.getHeader("Last-Modified") != null;
+    }
+
+    /**
+     * Whether this entry may be served without contacting the server.
+     *
+     * @param now Current time in ms since the epoch
+     * @return true if fresh
+     */
+    public boolean isFresh(long now) {
+        return getFreshnessLifetime() > getCurrentAge(now);
+    }
+
+    /**
+     * Whether a conditional request can be made for this entry.
+     *
+     * @return true if the entry has an ETag or Last-Modified header
+     */
+    public boolean hasValidator() {
+        return getHeader("ETag") != null || getHeader("Last-Modified") != null;
+    }
+
+    /**
+     * Adds If-None-Match and If-Modified-Since headers for this entry to a
+     * request attempt.
+     *
+     * @param context
+     */
+    public void addConditionalHeaders(RequestContext context) {
+        String etag = getHeader("ETag");
+        if (etag != null) {
+            context.addRequestHeader("If-None-Match", etag);
+        }
+        String lastModified = getHeader("Last-Modified");
+        if (lastModified != null) {
+            context.addRequestHeader("If-Modified-Since", lastModified);
+        }
+    }
+
+    /**
+     * Returns a copy of this entry updated with the headers of a 304 Not
+     * Modified response, as required when a revalidation succeeds.
+     *
+     * @param notModified The 304 response
+     * @param requestTime When the conditional request was sent
+     * @param responseTime When the 304 was received
+     * @return Updated entry
+     */
+    public CacheEntry revalidate(HttpResponse notModified, long requestTime, long responseTime) {
+        Map<String, List<String>> merged = new LinkedHashMap<String, List<String>>(headers);
+        for (Map.Entry<String, List<String>> header : notModified.getHeaders().entrySet()) {
+            String name = header.getKey();
+            if (name == null || name.equalsIgnoreCase("Content-Length")) {
+                // Keep the status line and length of the stored response
+                continue;
+            }
+            for (String existing : new ArrayList<String>(merged.keySet())) {
+                if (name.equalsIgnoreCase(existing)) {
+                    merged.remove(existing);
+                }
+            }
+            merged.put(name, header.getValue());
+        }
+        return new CacheEntry(status, url, merged, body, requestTime, responseTime);
+    }
+
+    /**
+     * Creates a response from this entry.
+     *
+     * @return Response object
+     */
+    public HttpResponse toHttpResponse() {
+        return new HttpResponse(status, url, headers, body);
+    }
+
+    /**
+     * Approximate memory held by this entry, used to bound caches by size.
+     *
+     * @return Approximate size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    private long estimateSize() {
+        long size = 128 + (body == null ? 0 : body.length) + (url == null ? 0 : url.length() * 2);
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            size += 32 + (header.getKey() == null ? 0 : header.getKey().length() * 2);
+            for (String value : header.getValue()) {
+                size += 16 + value.length() * 2;
+            }
+        }
+        return size;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public long getRequestTime() {
+        return requestTime;
+    }
+
+    public long getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * Freshness lifetime in ms from Cache-Control or Expires, preferring
+     * s-maxage as a shared cache must. no-cache
+     * entries have none and are always revalidated.
+     */
+    private long getFreshnessLifetime() {
+        String cacheControl = getHeader("Cache-Control");
+        if (hasDirective(cacheControl, "no-cache")) {
+            return 0;
+        }
+        String maxAge = getDirective(cacheControl, "s-maxage");
+        if (maxAge == null) {
+            maxAge = getDirective(cacheControl, "max-age");
+        }
+        if (maxAge != null) {
+            try {
+                return Long.parseLong(maxAge) * 1000;
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        long expires = parseDate(getHeader("Expires"));
+        if (expires > 0) {
+            long date = parseDate(getHeader("Date"));
+            return expires - (date > 0 ? date : responseTime);
+        }
+        return 0;
+    }
+
+    /**
+     * Current age in ms as defined by RFC 7234 section 4.2.3.
+     */
+    private long getCurrentAge(long now) {
+        long date = parseDate(getHeader("Date"));
+        long apparentAge = (date > 0) ? Math.max(0, responseTime - date) : 0;
+        long ageValue = 0;
+        String age = getHeader("Age");
+        if (age != null) {
+            try {
+                ageValue = Long.parseLong(age.trim()) * 1000;
+            } catch (NumberFormatException e) {
+                // Ignore malformed header
+            }
+        }
+        long correctedInitialAge = Math.max(apparentAge, ageValue + (responseTime - requestTime));
+        return correctedInitialAge + (now - responseTime);
+    }
+
+    private String getHeader(String name) {
+        return HttpResponse.getHeader(headers, name);
+    }
+
+    private static boolean hasDirective(String cacheControl, String directive) {
+        return getDirective(cacheControl, directive) != null;
+    }
+
+    /**
+     * Finds a Cache-Control directive.
+     *
+     * @return The directive's value, "" if it has none, or null if absent
+     */
+    private static String getDirective(String cacheControl, String directive) {
+        if (cacheControl == null) {
+            return null;
+        }
+        for (String part : cacheControl.split(",")) {
+            String token = part.trim();
+            int eq = token.indexOf('=');
+            String name = (eq < 0) ? token : token.substring(0, eq).trim();
+            if (name.equalsIgnoreCase(directive)) {
+                if (eq < 0) {
+                    return "";
+                }
+                String value = token.substring(eq + 1).trim();
+                if (value.startsWith("\"") && value.endsWith("\"") && value.length() > 1) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses an RFC 1123 date.
+     *
+     * @return ms since the epoch, or 0 if absent or malformed
+     */
+    private static long parseDate(String value) {
+        if (value == null) {
+            return 0;
+        }
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date date = format.parse(value.trim());
+            return date.getTime();
+        } catch (ParseException e) {
+            // Per spec, an invalid Expires means already expired
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,386 @@
+package com.turbomanage.httpclient;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending requests to a host that is failing, so that callers fail at
+ * once instead of each waiting for a timeout. Set on a client with
+ * {@link AbstractHttpClient#setCircuitBreaker(CircuitBreaker)}.
+ *
+ * <p>Each host has a circuit which starts {@link CircuitState#CLOSED}. The
+ * outcomes of the last {@link #getWindowSize()} requests to the host are
+ * kept, and once at least {@link #getMinimumCalls()} have been recorded, the
+ * circuit opens if the percentage that failed reaches
+ * {@link #getFailureRateThreshold()} or the percentage slower than
+ * {@link #getSlowCallDuration()} reaches
+ * {@link #getSlowCallRateThreshold()}. A request fails if it throws or if
+ * {@link #isFailure(HttpResponse)} says so, by default for a 5xx status.</p>
+ *
+ * <p>While {@link CircuitState#OPEN}, requests to the host throw an
+ * {@link HttpRequestException} caused by a {@link CircuitOpenException}
+ * without being sent, and are not retried. After {@link #getOpenDuration()}
+ * the circuit is {@link CircuitState#HALF_OPEN} and lets
+ * {@link #getHalfOpenCalls()} trial requests through. If they all succeed
+ * in time the circuit closes; if any fails or is slow it opens again.</p>
+ *
+ * <p>A breaker may be shared by several clients so that they stop calling
+ * a failed host together. Recording takes a short lock on the host's
+ * circuit only.</p>
+ *
+ * @author David M. Chandler
+ */
+public class CircuitBreaker {
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final ConcurrentMap<String, Circuit> circuits =
+            new ConcurrentHashMap<String, Circuit>();
+    private final StripedCounter rejected = new StripedCounter();
+    private volatile CircuitBreakerListener listener;
+    private volatile float failureRateThreshold = 50;
+    private volatile float slowCallRateThreshold = 80;
+    private volatile long slowCallDuration = 5000;
+    private volatile int windowSize = 20;
+    private volatile int minimumCalls = 10;
+    private volatile long openDuration = 10000;
+    private volatile int halfOpenCalls = 3;
+
+    /**
+     * Called before sending a request to the host.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @throws CircuitOpenException if the request must not be sent
+     */
+    void acquire(String host) throws CircuitOpenException {
+        Circuit circuit = forHost(host);
+        CircuitState from;
+        CircuitState to;
+        long retryAfter;
+        synchronized (circuit) {
+            from = circuit.state;
+            retryAfter = circuit.acquire(System.nanoTime());
+            to = circuit.state;
+        }
+        notifyTransition(host, from, to);
+        if (retryAfter >= 0) {
+            rejected.increment();
+            throw new CircuitOpenException(host, retryAfter);
+        }
+    }
+
+    /**
+     * Records the outcome of a request allowed by {@link #acquire(String)}.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @param failed true if the request threw or {@link #isFailure} is true
+     * @param elapsed Duration of the request in ms
+     */
+    void record(String host, boolean failed, long elapsed) {
+        Circuit circuit = forHost(host);
+        byte outcome = (byte) ((failed ? FAILED : 0) | (elapsed >= slowCallDuration ? SLOW : 0));
+        CircuitState from;
+        CircuitState to;
+        synchronized (circuit) {
+            from = circuit.state;
+            circuit.record(outcome, System.nanoTime());
+            to = circuit.state;
+        }
+        notifyTransition(host, from, to);
+    }
+
+    /**
+     * Returns the permit of a request allowed by {@link #acquire(String)}
+     * that was cancelled, without recording an outcome.
+     *
+     * @param host Host name, followed by :port if not the default port
+     */
+    void release(String host) {
+        Circuit circuit = forHost(host);
+        synchronized (circuit) {
+            if (circuit.state == CircuitState.HALF_OPEN) {
+                circuit.permits++;
+            }
+        }
+    }
+
+    /**
+     * Decides whether a response counts as a failure. Override to count
+     * other statuses, such as 429.
+     *
+     * @param httpResponse
+     * @return true if the status is 500 or above
+     */
+    protected boolean isFailure(HttpResponse httpResponse) {
+        return httpResponse.getStatus() >= 500;
+    }
+
+    private void notifyTransition(String host, CircuitState from, CircuitState to) {
+        CircuitBreakerListener l = listener;
+        if (l != null && from != to) {
+            l.onStateChange(host, from, to);
+        }
+    }
+
+    private Circuit forHost(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            Circuit newCircuit = new Circuit();
+            circuit = circuits.putIfAbsent(host, newCircuit);
+            if (circuit == null) {
+                circuit = newCircuit;
+            }
+        }
+        return circuit;
+    }
+
+    /**
+     * Returns the state of the circuit for a host. An open circuit reports
+     * {@link CircuitState#OPEN} until the next request to the host after
+     * {@link #getOpenDuration()}.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @return State, CLOSED if no requests have been made to the host
+     */
+    public CircuitState getState(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            return CircuitState.CLOSED;
+        }
+        synchronized (circuit) {
+            return circuit.state;
+        }
+    }
+
+    /**
+     * Closes the circuit for a host and forgets its recorded outcomes.
+     *
+     * @param host Host name, followed by :port if not the default port
+     */
+    public void reset(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            return;
+        }
+        CircuitState from;
+        synchronized (circuit) {
+            from = circuit.state;
+            circuit.transition(CircuitState.CLOSED, 0);
+        }
+        notifyTransition(host, from, CircuitState.CLOSED);
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of requests failed without being sent
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Sets a listener to be notified when a circuit changes state, or null
+     * for none (the default).
+     *
+     * @param listener
+     */
+    public void setListener(CircuitBreakerListener listener) {
+        this.listener = listener;
+    }
+
+    public float getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * Sets the percentage of failed requests in the window at which the
+     * circuit opens. Default 50.
+     *
+     * @param percent
+     */
+    public void setFailureRateThreshold(float percent) {
+        this.failureRateThreshold = percent;
+    }
+
+    public float getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    /**
+     * Sets the percentage of slow requests in the window at which the
+     * circuit opens. Default 80; pass a value above 100 to ignore slow
+     * requests.
+     *
+     * @param percent
+     */
+    public void setSlowCallRateThreshold(float percent) {
+        this.slowCallRateThreshold = percent;
+    }
+
+    public long getSlowCallDuration() {
+        return slowCallDuration;
+    }
+
+    /**
+     * Sets how long a request, including connecting, may take before it
+     * counts as slow. Default 5 seconds.
+     *
+     * @param slowCallDuration in ms
+     */
+    public void setSlowCallDuration(long slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Sets the number of most recent outcomes kept for each host. Default
+     * 20. Changing it clears the outcomes recorded so far.
+     *
+     * @param windowSize
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be at least 1");
+        }
+        this.windowSize = windowSize;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * Sets the number of outcomes that must be recorded before the rates
+     * are checked, so that a few early failures do not open the circuit.
+     * Default 10.
+     *
+     * @param minimumCalls
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = Math.max(minimumCalls, 1);
+    }
+
+    public long getOpenDuration() {
+        return openDuration;
+    }
+
+    /**
+     * Sets how long a circuit stays open before trial requests are sent.
+     * Default 10 seconds.
+     *
+     * @param openDuration in ms
+     */
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    /**
+     * Sets the number of trial requests that must succeed for a half-open
+     * circuit to close. Default 3.
+     *
+     * @param halfOpenCalls
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+    }
+
+    /**
+     * The circuit for one host. Guarded by its own lock.
+     */
+    private class Circuit {
+
+        CircuitState state = CircuitState.CLOSED;
+        byte[] outcomes = new byte[windowSize];
+        int next;
+        int count;
+        int failures;
+        int slow;
+        long openedAt;
+        int permits;
+        int successes;
+
+        /**
+         * @return -1 if the request may be sent, else ms until it may be
+         */
+        long acquire(long now) {
+            if (state == CircuitState.OPEN) {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(openDuration) - (now - openedAt);
+                if (remaining > 0) {
+                    return TimeUnit.NANOSECONDS.toMillis(remaining) + 1;
+                }
+                transition(CircuitState.HALF_OPEN, now);
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                if (permits == 0) {
+                    return 0;
+                }
+                permits--;
+            }
+            return -1;
+        }
+
+        void record(byte outcome, long now) {
+            if (state == CircuitState.HALF_OPEN) {
+                if (outcome != 0) {
+                    transition(CircuitState.OPEN, now);
+                } else if (++successes >= halfOpenCalls) {
+                    transition(CircuitState.CLOSED, now);
+                }
+                return;
+            }
+            if (state == CircuitState.OPEN) {
+                // Sent before the circuit opened
+                return;
+            }
+            if (outcomes.length != windowSize) {
+                clear();
+            }
+            if (count == outcomes.length) {
+                byte oldest = outcomes[next];
+                failures -= oldest & FAILED;
+                slow -= (oldest & SLOW) >> 1;
+            } else {
+                count++;
+            }
+            outcomes[next] = outcome;
+            next = (next + 1) % outcomes.length;
+            failures += outcome & FAILED;
+            slow += (outcome & SLOW) >> 1;
+            if (count >= minimumCalls && (failures * 100f >= failureRateThreshold * count
+                    || slow * 100f >= slowCallRateThreshold * count)) {
+                transition(CircuitState.OPEN, now);
+            }
+        }
+
+        void transition(CircuitState to, long now) {
+            state = to;
+            if (to == CircuitState.OPEN) {
+                openedAt = now;
+            } else if (to == CircuitState.HALF_OPEN) {
+                permits = halfOpenCalls;
+                successes = 0;
+            } else {
+                clear();
+            }
+        }
+
+        private void clear() {
+            outcomes = new byte[windowSize];
+            next = 0;
+            count = 0;
+            failures = 0;
+            slow = 0;
+        }
+    }
+
+}
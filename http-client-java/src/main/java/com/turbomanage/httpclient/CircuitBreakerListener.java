@@ -0,0 +1,24 @@
+package com.turbomanage.httpclient;
+
+/**
+ * Notified when the circuit for a host changes state. Set on a
+ * {@link CircuitBreaker} with
+ * {@link CircuitBreaker#setListener(CircuitBreakerListener)}.
+ *
+ * <p>Methods are invoked on the thread whose request caused the change, so
+ * implementations must be thread-safe, return quickly and not throw.</p>
+ *
+ * @author David M. Chandler
+ */
+public interface CircuitBreakerListener {
+
+    /**
+     * The circuit for a host has changed state.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @param from Previous state
+     * @param to New state
+     */
+    void onStateChange(String host, CircuitState from, CircuitState to);
+
+}
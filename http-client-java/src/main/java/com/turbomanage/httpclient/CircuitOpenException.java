@@ -0,0 +1,51 @@
+package com.turbomanage.httpclient;
+
+import java.io.IOException;
+
+/**
+ * Thrown in place of sending a request while the {@link CircuitBreaker} for
+ * its host is open. Clients wrap it in an {@link HttpRequestException}, so
+ * check for it with <code>e.getCause() instanceof CircuitOpenException</code>.
+ * Requests that fail this way are not retried.
+ *
+ * @author David M. Chandler
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 4391853215068370544L;
+
+    private final String host;
+    private final long retryAfter;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @param retryAfter Time in ms until a trial request may be sent
+     */
+    public CircuitOpenException(String host, long retryAfter) {
+        super("Circuit open for " + host + ", retry after " + retryAfter + " ms");
+        this.host = host;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Host name, followed by :port if not the default port
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Time in ms until a trial request may be sent, or 0 if the
+     *         trial requests are already in flight
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+}
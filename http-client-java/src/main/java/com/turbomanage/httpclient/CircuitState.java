@@ -0,0 +1,15 @@
+package com.turbomanage.httpclient;
+
+/**
+ * States of the circuit that a {@link CircuitBreaker} keeps for each host.
+ *
+ * @author David M. Chandler
+ */
+public enum CircuitState {
+    /** Requests are sent and their outcomes recorded */
+    CLOSED,
+    /** Requests fail at once without being sent */
+    OPEN,
+    /** A few trial requests are sent to see whether the host has recovered */
+    HALF_OPEN
+}
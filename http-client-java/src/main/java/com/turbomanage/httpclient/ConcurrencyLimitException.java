@@ -0,0 +1,52 @@
+package com.turbomanage.httpclient;
+
+import java.io.IOException;
+
+/**
+ * Passed to the callback in place of sending a request when a
+ * {@link ConcurrencyLimiter} cannot admit it, because its host already has
+ * as many requests waiting as allowed or the request waited too long.
+ * Clients wrap it in an {@link HttpRequestException}, so check for it with
+ * <code>e.getCause() instanceof ConcurrencyLimitException</code>.
+ *
+ * @author David M. Chandler
+ */
+public class ConcurrencyLimitException extends IOException {
+
+    private static final long serialVersionUID = -6120449733528117815L;
+
+    private final String host;
+    private final int limit;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @param limit Requests allowed in flight to the host at the time
+     * @param message Why the request was not admitted
+     */
+    public ConcurrencyLimitException(String host, int limit, String message) {
+        super(message + " for " + host + " (limit " + limit + ")");
+        this.host = host;
+        this.limit = limit;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Host name, followed by :port if not the default port
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Requests allowed in flight to the host when this was thrown
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+}
@@ -0,0 +1,396 @@
+package com.turbomanage.httpclient;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of async requests in flight to each host, adapting the
+ * limit to measured latency. Set on a client with
+ * {@link AsyncHttpClient#setConcurrencyLimiter(ConcurrencyLimiter)}.
+ *
+ * <p>The limit follows TCP Vegas. The fastest response time seen is taken
+ * as the time without load, and the requests queued at the server are
+ * estimated as <code>limit * (1 - fastest / latest)</code>. While fewer
+ * than 3 are queued the limit grows by one; above 6 it shrinks by one.
+ * A request that fails, or is answered 429 or 503, cuts the limit by 10%.
+ * The limit only grows while at least half of it is in use, and the fastest
+ * time is measured afresh every 1000 responses in case the route or server
+ * has changed. Each attempt of a request, including retries and hedges,
+ * holds its own permit, and responses served from a cache or shared with a
+ * coalesced request are not timed.</p>
+ *
+ * <p>Requests beyond the limit wait in a queue of at most
+ * {@link #getMaxQueueSize()} per host, and are started in order as others
+ * complete. When the queue is full, or a request has waited longer than
+ * {@link #getMaxQueueWait()}, it fails at once with a
+ * {@link ConcurrencyLimitException}. Under overload, callers thus see fast
+ * failures instead of ever growing latency.</p>
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+ *    limiter.setMaxLimit(100);
+ *    httpClient.setConcurrencyLimiter(limiter);
+ *    ...
+ *    int limit = limiter.getLimit("api.example.com");
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * Estimated requests queued at the server below which the limit grows.
+     */
+    static final int ALPHA = 3;
+    /**
+     * Estimated requests queued at the server above which the limit shrinks.
+     */
+    static final int BETA = 6;
+    /**
+     * Responses between fresh measurements of the time without load.
+     */
+    static final int PROBE_INTERVAL = 1000;
+
+    private final ConcurrentMap<String, HostLimit> hosts =
+            new ConcurrentHashMap<String, HostLimit>();
+    private final StripedCounter rejected = new StripedCounter();
+    private volatile int initialLimit = 20;
+    private volatile int minLimit = 1;
+    private volatile int maxLimit = 200;
+    private volatile int maxQueueSize = 50;
+    private volatile long maxQueueWait = 1000;
+
+    /**
+     * An attempt waiting to be admitted.
+     */
+    abstract static class Waiter {
+
+        long enqueuedAt;
+
+        /**
+         * Sends the attempt, which now holds a permit.
+         */
+        abstract void run();
+
+        /**
+         * Fails the attempt without sending it.
+         *
+         * @param e
+         */
+        abstract void reject(ConcurrencyLimitException e);
+    }
+
+    /**
+     * Admits an attempt to the host if under the limit, or else queues its
+     * waiter. A full queue rejects the waiter on the calling thread, outside
+     * of any lock. A queued waiter is run by the {@link #release} that frees
+     * a permit for it, or rejected on the scheduler if it is still waiting
+     * after {@link #getMaxQueueWait()}.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @param waiter
+     * @param scheduler Used to reject the waiter if it waits too long
+     * @return true if admitted at once, in which case the caller sends the
+     *         attempt and the waiter is not used
+     */
+    boolean acquire(final String host, Waiter waiter, ScheduledExecutorService scheduler) {
+        HostLimit h = forHost(host);
+        List<Waiter> expired;
+        boolean run = false;
+        boolean queued = false;
+        ConcurrencyLimitException full = null;
+        synchronized (h) {
+            long now = System.nanoTime();
+            expired = h.pollExpired(now);
+            if (h.inFlight < h.limit && h.queue.isEmpty()) {
+                h.inFlight++;
+                run = true;
+            } else if (h.queue.size() < maxQueueSize) {
+                waiter.enqueuedAt = now;
+                h.queue.addLast(waiter);
+                queued = true;
+            } else {
+                full = new ConcurrencyLimitException(host, h.limit, "Wait queue full");
+            }
+        }
+        rejectAll(host, expired);
+        if (queued) {
+            try {
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        expire(host);
+                    }
+                }, maxQueueWait, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Scheduler shut down, so expire when the queue is next used
+            }
+        } else if (full != null) {
+            rejected.increment();
+            waiter.reject(full);
+        }
+        return run;
+    }
+
+    /**
+     * Rejects the waiters for a host that have waited too long.
+     */
+    private void expire(String host) {
+        HostLimit h = forHost(host);
+        List<Waiter> expired;
+        synchronized (h) {
+            expired = h.pollExpired(System.nanoTime());
+        }
+        rejectAll(host, expired);
+    }
+
+    /**
+     * Returns the permit of an attempt admitted by
+     * {@link #acquire(String, Waiter, ScheduledExecutorService)}, adjusts
+     * the limit, and runs the waiters that now fit on the calling thread.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @param latency Time the attempt took in ns, or -1 if it was not sent
+     *        or not answered by the network
+     * @param dropped true if the request failed in a way that suggests
+     *        overload
+     */
+    void release(String host, long latency, boolean dropped) {
+        HostLimit h = forHost(host);
+        List<Waiter> expired;
+        List<Waiter> ready = null;
+        synchronized (h) {
+            long now = System.nanoTime();
+            if (latency >= 0 || dropped) {
+                h.update(latency, dropped);
+            }
+            h.inFlight--;
+            expired = h.pollExpired(now);
+            while (h.inFlight < h.limit && !h.queue.isEmpty()) {
+                if (ready == null) {
+                    ready = new ArrayList<Waiter>();
+                }
+                ready.add(h.queue.pollFirst());
+                h.inFlight++;
+            }
+        }
+        rejectAll(host, expired);
+        if (ready != null) {
+            for (Waiter waiter : ready) {
+                waiter.run();
+            }
+        }
+    }
+
+    private void rejectAll(String host, List<Waiter> expired) {
+        if (expired == null) {
+            return;
+        }
+        ConcurrencyLimitException e = new ConcurrencyLimitException(host, getLimit(host),
+                "Waited longer than " + maxQueueWait + " ms");
+        for (Waiter waiter : expired) {
+            rejected.increment();
+            waiter.reject(e);
+        }
+    }
+
+    private HostLimit forHost(String host) {
+        HostLimit h = hosts.get(host);
+        if (h == null) {
+            HostLimit newLimit = new HostLimit(initialLimit);
+            h = hosts.putIfAbsent(host, newLimit);
+            if (h == null) {
+                h = newLimit;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Returns the current limit for a host.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @return Requests allowed in flight, the initial limit if no requests
+     *         have been made to the host
+     */
+    public int getLimit(String host) {
+        HostLimit h = hosts.get(host);
+        if (h == null) {
+            return initialLimit;
+        }
+        synchronized (h) {
+            return h.limit;
+        }
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @return Requests to the host now in flight
+     */
+    public int getInFlight(String host) {
+        HostLimit h = hosts.get(host);
+        if (h == null) {
+            return 0;
+        }
+        synchronized (h) {
+            return h.inFlight;
+        }
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @return Requests to the host now waiting to be sent
+     */
+    public int getQueued(String host) {
+        HostLimit h = hosts.get(host);
+        if (h == null) {
+            return 0;
+        }
+        synchronized (h) {
+            return h.queue.size();
+        }
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of requests failed without being sent
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * Sets the limit for hosts not yet requested. Default 20.
+     *
+     * @param initialLimit
+     */
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = Math.max(initialLimit, 1);
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Sets the lowest limit. Default 1.
+     *
+     * @param minLimit
+     */
+    public void setMinLimit(int minLimit) {
+        this.minLimit = Math.max(minLimit, 1);
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Sets the highest limit. Default 200. When requests go through
+     * {@link ExecutorServiceFactory}, requests beyond its thread count wait
+     * for a thread, so a higher limit gains nothing.
+     *
+     * @param maxLimit
+     */
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = Math.max(maxLimit, 1);
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * Sets the most requests that may wait for each host once the limit is
+     * reached. Default 50; 0 rejects requests over the limit at once.
+     *
+     * @param maxQueueSize
+     */
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = Math.max(maxQueueSize, 0);
+    }
+
+    public long getMaxQueueWait() {
+        return maxQueueWait;
+    }
+
+    /**
+     * Sets how long a request may wait in the queue before it fails.
+     * Default 1 second.
+     *
+     * @param maxQueueWait in ms
+     */
+    public void setMaxQueueWait(long maxQueueWait) {
+        this.maxQueueWait = maxQueueWait;
+    }
+
+    /**
+     * The limit and queue for one host. Guarded by its own lock.
+     */
+    private class HostLimit {
+
+        final ArrayDeque<Waiter> queue = new ArrayDeque<Waiter>();
+        int limit;
+        int inFlight;
+        long noLoadLatency;
+        int samples;
+
+        HostLimit(int limit) {
+            this.limit = limit;
+        }
+
+        void update(long latency, boolean dropped) {
+            if (dropped) {
+                limit = Math.max(minLimit, Math.min((int) (limit * 0.9), limit - 1));
+                return;
+            }
+            if (noLoadLatency == 0 || latency < noLoadLatency
+                    || ++samples % PROBE_INTERVAL == 0) {
+                noLoadLatency = Math.max(latency, 1);
+            }
+            double queued = limit * (1 - (double) noLoadLatency / Math.max(latency, 1));
+            if (queued < ALPHA) {
+                if (inFlight * 2 >= limit) {
+                    limit++;
+                }
+            } else if (queued > BETA) {
+                limit--;
+            }
+            limit = Math.max(minLimit, Math.min(limit, maxLimit));
+        }
+
+        /**
+         * @return Waiters removed for waiting too long, or null if none
+         */
+        List<Waiter> pollExpired(long now) {
+            List<Waiter> expired = null;
+            long timeout = TimeUnit.MILLISECONDS.toNanos(maxQueueWait);
+            Waiter waiter;
+            while ((waiter = queue.peekFirst()) != null && now - waiter.enqueuedAt >= timeout) {
+                queue.pollFirst();
+                if (expired == null) {
+                    expired = new ArrayList<Waiter>();
+                }
+                expired.add(waiter);
+            }
+            return expired;
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.turbomanage.httpclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counts, by host, how often requests reuse an idle connection (a hit) or
+ * open a new one (a miss). Reported by {@link KeepAlivePool} and by
+ * transports that pool connections, such as
+ * {@link com.turbomanage.httpclient.nio.NioHttpTransport}. Recording is
+ * lock-free.
+ *
+ * @author David M. Chandler
+ */
+public class ConnectionPoolStats {
+
+    private final ConcurrentMap<String, HostPoolStats> hosts =
+            new ConcurrentHashMap<String, HostPoolStats>();
+    private final HostPoolStats totals = new HostPoolStats("*");
+
+    /**
+     * Records a request sent on an idle connection.
+     *
+     * @param host Host name, followed by :port if not the default port
+     */
+    public void recordHit(String host) {
+        forHost(host).recordHit();
+        totals.recordHit();
+    }
+
+    /**
+     * Records a request that had to open a new connection.
+     *
+     * @param host Host name, followed by :port if not the default port
+     */
+    public void recordMiss(String host) {
+        forHost(host).recordMiss();
+        totals.recordMiss();
+    }
+
+    /**
+     * Records a reusable connection that was closed instead of kept idle.
+     *
+     * @param host Host name, followed by :port if not the default port
+     */
+    public void recordEviction(String host) {
+        forHost(host).recordEviction();
+        totals.recordEviction();
+    }
+
+    /**
+     * Returns the counters for one host.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @return Counters, or null if no requests have been made to the host
+     */
+    public HostPoolStats getHostStats(String host) {
+        return hosts.get(host);
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Counters for each host that has been requested, sorted by host
+     */
+    public List<HostPoolStats> getHostStats() {
+        List<HostPoolStats> list = new ArrayList<HostPoolStats>(hosts.values());
+        Collections.sort(list, new Comparator<HostPoolStats>() {
+            @Override
+            public int compare(HostPoolStats a, HostPoolStats b) {
+                return a.getHost().compareTo(b.getHost());
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Counters for all hosts combined
+     */
+    public HostPoolStats getTotals() {
+        return totals;
+    }
+
+    private HostPoolStats forHost(String host) {
+        HostPoolStats stats = hosts.get(host);
+        if (stats == null) {
+            HostPoolStats newStats = new HostPoolStats(host);
+            stats = hosts.putIfAbsent(host, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (HostPoolStats stats : getHostStats()) {
+            sb.append(stats).append('\n');
+        }
+        return sb.append(totals).toString();
+    }
+
+}
@@ -7,7 +7,9 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * Default {@link RequestLogger} used by {@link BasicHttpClient}. In recent
+ * {@link RequestLogger} that prints each request and response in full on
+ * the calling thread. Useful when debugging, but it serializes all requests
+ * on System.out; the default is {@link AsyncRequestLogger}. In recent
  * versions of Android, log() gets directed to LogCat so this can
  * work for Android, too.
  * http://stackoverflow.com/questions/2220547/why-doesnt-system
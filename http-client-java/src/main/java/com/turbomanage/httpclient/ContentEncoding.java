@@ -0,0 +1,65 @@
+package com.turbomanage.httpclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes response bodies sent with Content-Encoding gzip or deflate, so that
+ * compression is transparent to the rest of the client. Decoding happens on
+ * the fly as the stream is read.
+ *
+ * @author David M. Chandler
+ */
+final class ContentEncoding {
+
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * Wraps a response stream in a decoder if the response is compressed.
+     *
+     * @param urlConnection The connection the stream belongs to
+     * @param in Input or error stream, may be null
+     * @return Decoded stream, or in if the response is not compressed
+     * @throws IOException
+     */
+    static InputStream decode(HttpURLConnection urlConnection, InputStream in)
+            throws IOException {
+        String encoding = urlConnection.getContentEncoding();
+        if (in == null || encoding == null) {
+            return in;
+        }
+        encoding = encoding.trim();
+        boolean gzip = encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip");
+        if (!gzip && !encoding.equalsIgnoreCase("deflate")) {
+            return in;
+        }
+        // Decoders read a header on construction, which fails on empty bodies
+        PushbackInputStream peek = new PushbackInputStream(in, 1);
+        int first = peek.read();
+        if (first == -1) {
+            return peek;
+        }
+        peek.unread(first);
+        return gzip ? new GZIPInputStream(peek, 8192) : new InflaterInputStream(peek);
+    }
+
+    /**
+     * Whether the response body will be decoded, in which case its
+     * Content-Length does not describe the decoded length.
+     *
+     * @param urlConnection
+     * @return true if compressed
+     */
+    static boolean isEncoded(HttpURLConnection urlConnection) {
+        String encoding = urlConnection.getContentEncoding();
+        return encoding != null && !encoding.trim().equalsIgnoreCase("identity");
+    }
+
+}
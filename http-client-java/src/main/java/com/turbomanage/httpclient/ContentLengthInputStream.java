@@ -0,0 +1,30 @@
+package com.turbomanage.httpclient;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * Input stream that carries the Content-Length of the response it reads, so
+ * that {@link BasicRequestHandler#readStream(InputStream)} can allocate the
+ * result array once instead of growing a buffer.
+ *
+ * @author David M. Chandler
+ */
+class ContentLengthInputStream extends FilterInputStream {
+
+    private final int contentLength;
+
+    /**
+     * @param in The response stream
+     * @param contentLength Value of the Content-Length header or -1 if unknown
+     */
+    ContentLengthInputStream(InputStream in, int contentLength) {
+        super(in);
+        this.contentLength = contentLength;
+    }
+
+    int getContentLength() {
+        return contentLength;
+    }
+
+}
@@ -0,0 +1,494 @@
+package com.turbomanage.httpclient;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persistent {@link HttpCache} that stores each response in its own file so
+ * that cached responses survive process restarts. A memory-mapped index
+ * records the size and last access time of every entry, which allows the
+ * cache to enforce its size limit by evicting the least recently used
+ * entries without listing or reading the cache directory.
+ *
+ * <p>Entries are written to a temporary file and renamed into place, so
+ * readers never see a partial entry. Each entry ends with a CRC32 checksum;
+ * entries that fail to parse or verify are deleted and treated as a miss. If
+ * the index itself is missing or damaged, it is rebuilt from the entry files
+ * when the cache is opened.</p>
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    HttpCache cache = new DiskHttpCache(new File(cacheDir, "http"), 50 * 1024 * 1024);
+ *    httpClient.setHttpCache(cache);
+ * </pre>
+ *
+ * Only one DiskHttpCache should be open on a given directory at a time. To
+ * add an in-memory tier in front, see {@link TieredHttpCache}.
+ *
+ * @author David M. Chandler
+ */
+public class DiskHttpCache implements HttpCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final String INDEX_FILE = "index";
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int INDEX_MAGIC = 0x48434958; // "HCIX"
+    private static final int ENTRY_MAGIC = 0x48434530; // "HCE0"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    // Slot: key hash, entry size, last access time
+    private static final int SLOT_SIZE = 24;
+
+    private final File directory;
+    private final long maxBytes;
+    private final int maxEntries;
+    private final MappedByteBuffer index;
+    private final Map<Long, Integer> slots = new HashMap<Long, Integer>();
+    private long size;
+
+    /**
+     * Opens or creates a cache in directory holding at most maxBytes of
+     * responses in up to {@link #DEFAULT_MAX_ENTRIES} entries.
+     *
+     * @param directory Created if it does not exist
+     * @param maxBytes
+     * @throws IOException if the directory or index cannot be created
+     */
+    public DiskHttpCache(File directory, long maxBytes) throws IOException {
+        this(directory, maxBytes, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Opens or creates a cache in directory holding at most maxBytes of
+     * responses in up to maxEntries entries.
+     *
+     * @param directory Created if it does not exist
+     * @param maxBytes
+     * @param maxEntries Number of index slots
+     * @throws IOException if the directory or index cannot be created
+     */
+    public DiskHttpCache(File directory, long maxBytes, int maxEntries) throws IOException {
+        if (maxBytes <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("maxBytes and maxEntries must be positive");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.index = mapIndex(new File(directory, INDEX_FILE), maxEntries);
+        synchronized (this) {
+            recover();
+            trimToSize();
+        }
+    }
+
+    @Override
+    public CacheEntry get(String url) {
+        long key = hash(url);
+        synchronized (this) {
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                return null;
+            }
+            index.putLong(offset(slot) + 16, System.currentTimeMillis());
+        }
+        CacheEntry entry = null;
+        try {
+            entry = readEntry(entryFile(key));
+        } catch (IOException e) {
+            // Missing or corrupt, drop it below
+        }
+        if (entry == null || !url.equals(entry.getUrl())) {
+            if (entry == null) {
+                remove(url);
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    @Override
+    public void put(String url, CacheEntry entry) {
+        if (entry.getBody() == null) {
+            return;
+        }
+        long key = hash(url);
+        File temp = new File(directory, toHex(key) + "-" + Thread.currentThread().getId()
+                + TEMP_SUFFIX);
+        long length;
+        try {
+            writeEntry(temp, entry);
+            length = temp.length();
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        if (length > maxBytes) {
+            temp.delete();
+            remove(url);
+            return;
+        }
+        synchronized (this) {
+            File file = entryFile(key);
+            // renameTo does not replace an existing file on all platforms
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    temp.delete();
+                    removeSlot(key);
+                    return;
+                }
+            }
+            removeSlot(key);
+            if (slots.size() >= maxEntries) {
+                evictEldest();
+            }
+            int slot = freeSlot();
+            writeSlot(slot, key, length, System.currentTimeMillis());
+            slots.put(key, slot);
+            size += length;
+            trimToSize();
+        }
+    }
+
+    @Override
+    public synchronized void remove(String url) {
+        long key = hash(url);
+        if (removeSlot(key)) {
+            entryFile(key).delete();
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (Long key : new ArrayList<Long>(slots.keySet())) {
+            removeSlot(key);
+            entryFile(key).delete();
+        }
+        size = 0;
+    }
+
+    /**
+     * Flushes the index to disk. The index is also written back by the
+     * operating system, so this is only needed to guard against a system
+     * crash; a damaged index is rebuilt on the next open in any case.
+     */
+    public synchronized void flush() {
+        index.force();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of bytes currently used by entry files
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Reconciles the index with the entry files. Slots whose file is gone or
+     * whose size does not match are cleared, files not in the index are
+     * added, and leftover temporary files are deleted.
+     */
+    private void recover() {
+        boolean valid = index.getInt(0) == INDEX_MAGIC && index.getInt(4) == VERSION
+                && index.getInt(8) == maxEntries;
+        if (!valid) {
+            for (int i = 0; i < HEADER_SIZE + maxEntries * SLOT_SIZE; i++) {
+                index.put(i, (byte) 0);
+            }
+            index.putInt(0, INDEX_MAGIC);
+            index.putInt(4, VERSION);
+            index.putInt(8, maxEntries);
+        }
+        for (int slot = 0; slot < maxEntries; slot++) {
+            long key = index.getLong(offset(slot));
+            if (key == 0) {
+                continue;
+            }
+            long length = index.getLong(offset(slot) + 8);
+            File file = entryFile(key);
+            if (slots.containsKey(key) || !file.isFile() || file.length() != length) {
+                writeSlot(slot, 0, 0, 0);
+            } else {
+                slots.put(key, slot);
+                size += length;
+            }
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            } else if (name.endsWith(ENTRY_SUFFIX)) {
+                Long key = parseKey(name);
+                if (key == null) {
+                    file.delete();
+                } else if (!slots.containsKey(key)) {
+                    if (slots.size() >= maxEntries) {
+                        file.delete();
+                        continue;
+                    }
+                    int slot = freeSlot();
+                    writeSlot(slot, key, file.length(), file.lastModified());
+                    slots.put(key, slot);
+                    size += file.length();
+                }
+            }
+        }
+    }
+
+    private void trimToSize() {
+        while (size > maxBytes && !slots.isEmpty()) {
+            evictEldest();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entry. A linear scan of the index is
+     * cheap compared to the file I/O that follows.
+     */
+    private void evictEldest() {
+        long eldestKey = 0;
+        long eldestAccess = Long.MAX_VALUE;
+        for (Map.Entry<Long, Integer> e : slots.entrySet()) {
+            long lastAccess = index.getLong(offset(e.getValue()) + 16);
+            if (lastAccess < eldestAccess) {
+                eldestAccess = lastAccess;
+                eldestKey = e.getKey();
+            }
+        }
+        if (removeSlot(eldestKey)) {
+            entryFile(eldestKey).delete();
+        }
+    }
+
+    private boolean removeSlot(long key) {
+        Integer slot = slots.remove(key);
+        if (slot == null) {
+            return false;
+        }
+        size -= index.getLong(offset(slot) + 8);
+        writeSlot(slot, 0, 0, 0);
+        return true;
+    }
+
+    private int freeSlot() {
+        for (int slot = 0; slot < maxEntries; slot++) {
+            if (index.getLong(offset(slot)) == 0) {
+                return slot;
+            }
+        }
+        throw new IllegalStateException("No free index slot");
+    }
+
+    private void writeSlot(int slot, long key, long length, long lastAccess) {
+        int offset = offset(slot);
+        index.putLong(offset, key);
+        index.putLong(offset + 8, length);
+        index.putLong(offset + 16, lastAccess);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private File entryFile(long key) {
+        return new File(directory, toHex(key) + ENTRY_SUFFIX);
+    }
+
+    private static MappedByteBuffer mapIndex(File file, int maxEntries) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            // The mapping remains valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) maxEntries * SLOT_SIZE);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void writeEntry(File file, CacheEntry entry) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)), crc));
+        try {
+            out.writeInt(ENTRY_MAGIC);
+            writeString(out, entry.getUrl());
+            out.writeInt(entry.getStatus());
+            out.writeLong(entry.getRequestTime());
+            out.writeLong(entry.getResponseTime());
+            Map<String, List<String>> headers = entry.getHeaders();
+            out.writeInt(headers.size());
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                writeString(out, header.getKey());
+                List<String> values = header.getValue();
+                out.writeInt(values.size());
+                for (String value : values) {
+                    writeString(out, value);
+                }
+            }
+            byte[] body = entry.getBody();
+            out.writeInt(body.length);
+            out.write(body);
+            // Checksum covers everything written so far
+            out.writeLong(crc.getValue());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static CacheEntry readEntry(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file)), crc));
+        try {
+            if (in.readInt() != ENTRY_MAGIC) {
+                return null;
+            }
+            String url = readString(in);
+            int status = in.readInt();
+            long requestTime = in.readLong();
+            long responseTime = in.readLong();
+            // Counts are checked against the file size, since each header
+            // takes at least 8 bytes and each value 4, so that a corrupt
+            // count cannot allocate more than the file could hold
+            long fileLength = file.length();
+            int headerCount = in.readInt();
+            if (headerCount < 0 || headerCount > fileLength / 8) {
+                return null;
+            }
+            Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+            for (int i = 0; i < headerCount; i++) {
+                String name = readString(in);
+                int valueCount = in.readInt();
+                if (valueCount < 0 || valueCount > fileLength / 4) {
+                    return null;
+                }
+                List<String> values = new ArrayList<String>();
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(readString(in));
+                }
+                headers.put(name, values);
+            }
+            int bodyLength = in.readInt();
+            if (bodyLength < 0 || bodyLength > fileLength) {
+                return null;
+            }
+            byte[] body = new byte[bodyLength];
+            in.readFully(body);
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                return null;
+            }
+            return new CacheEntry(status, url, headers, body, requestTime, responseTime);
+        } catch (EOFException e) {
+            // Truncated entry
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(RequestHandler.UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > 1024 * 1024) {
+            throw new EOFException("Implausible string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, RequestHandler.UTF8);
+    }
+
+    /**
+     * Derives a non-zero 64-bit key from the first 8 bytes of the URL's
+     * SHA-1 hash. The full URL is stored in the entry and checked on read.
+     */
+    private static long hash(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(url.getBytes(RequestHandler.UTF8));
+            long key = 0;
+            for (int i = 0; i < 8; i++) {
+                key = (key << 8) | (bytes[i] & 0xff);
+            }
+            return key == 0 ? 1 : key;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(long key) {
+        String hex = Long.toHexString(key);
+        StringBuilder sb = new StringBuilder(16);
+        for (int i = hex.length(); i < 16; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+
+    private static Long parseKey(String name) {
+        String hex = name.substring(0, name.length() - ENTRY_SUFFIX.length());
+        if (hex.length() != 16) {
+            return null;
+        }
+        try {
+            long high = Long.parseLong(hex.substring(0, 8), 16);
+            long low = Long.parseLong(hex.substring(8), 16);
+            long key = (high << 32) | low;
+            return key == 0 ? null : Long.valueOf(key);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+}
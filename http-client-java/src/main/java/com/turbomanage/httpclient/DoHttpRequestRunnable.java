@@ -0,0 +1,67 @@
+package com.turbomanage.httpclient;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runnable that wraps an HttpRequest. Designed to be used in conjunction with
+ * {@link AsyncHttpClient} and {@link ExecutorServiceFactory} so that requests
+ * can be made on a thread pool.
+ *
+ * @author David M. Chandler
+ */
+public class DoHttpRequestRunnable implements AsyncRequestExecutor, Runnable {
+
+    private final Executor executor;
+    private final AsyncHttpClient client;
+    private final AsyncCallback callback;
+    private HttpRequest httpRequest;
+
+    /**
+     * Construct a new runnable with a callback to invoke when the request
+     * completes or fails.
+     *
+     * @param executor Runs the request
+     * @param httpClient
+     * @param callback
+     */
+    public DoHttpRequestRunnable(Executor executor, AsyncHttpClient httpClient,
+            AsyncCallback callback) {
+        this.executor = executor;
+        this.client = httpClient;
+        this.callback = callback;
+    }
+
+    /**
+     * Submits the request to the executor. If the executor rejects it, the
+     * callback's onError method is invoked on the calling thread.
+     *
+     * @see com.turbomanage.httpclient.AsyncRequestExecutor#execute(com.turbomanage.httpclient.HttpRequest)
+     */
+    @Override
+    public void execute(HttpRequest httpRequest) {
+        if (httpRequest == null) {
+            throw new IllegalArgumentException(
+                    "DoHttpRequestRunnable takes exactly one argument of type HttpRequest");
+        }
+        this.httpRequest = httpRequest;
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            callback.onError(e);
+        }
+    }
+
+    /**
+     * Makes the first attempt on this thread. Retries are scheduled by the
+     * client and resubmitted to the executor, so the thread is not held
+     * while waiting for them.
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+        client.tryMany(httpRequest, executor, callback);
+    }
+
+}
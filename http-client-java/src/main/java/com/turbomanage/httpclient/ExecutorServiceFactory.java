@@ -0,0 +1,164 @@
+package com.turbomanage.httpclient;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory for plain JVM deployments that runs each request on a bounded
+ * {@link ExecutorService}. This is the server-side counterpart of the Android
+ * AsyncTaskFactory and is meant to be shared by all {@link AsyncHttpClient}s
+ * in an application so that the total number of request threads stays
+ * bounded.
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    ExecutorServiceFactory factory = new ExecutorServiceFactory(64, 1000);
+ *    AsyncHttpClient httpClient = new AsyncHttpClient(factory, "http://www.google.com");
+ *    ...
+ *    factory.shutdown();
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public class ExecutorServiceFactory implements AsyncRequestExecutorFactory {
+
+    public static final int DEFAULT_MAX_THREADS = 32;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final String DEFAULT_THREAD_NAME_PREFIX = "http-client";
+
+    private final ExecutorService executorService;
+
+    /**
+     * Constructs a factory with {@link #DEFAULT_MAX_THREADS} threads and a
+     * queue of {@link #DEFAULT_QUEUE_CAPACITY} pending requests.
+     */
+    public ExecutorServiceFactory() {
+        this(DEFAULT_MAX_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructs a factory with the given pool size and queue depth. Requests
+     * submitted when both are exhausted are rejected and reported to the
+     * callback's onError method.
+     *
+     * @param maxThreads Maximum number of concurrent requests
+     * @param queueCapacity Maximum number of requests waiting for a thread
+     */
+    public ExecutorServiceFactory(int maxThreads, int queueCapacity) {
+        this(maxThreads, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Constructs a factory with the given pool size, queue depth, and policy
+     * to apply when both are exhausted. Note that with
+     * {@link ThreadPoolExecutor.DiscardPolicy} or
+     * {@link ThreadPoolExecutor.DiscardOldestPolicy} the callback of a
+     * discarded request is never invoked.
+     *
+     * @param maxThreads Maximum number of concurrent requests
+     * @param queueCapacity Maximum number of requests waiting for a thread
+     * @param rejectionPolicy Invoked when a request cannot be queued
+     */
+    public ExecutorServiceFactory(int maxThreads, int queueCapacity,
+            RejectedExecutionHandler rejectionPolicy) {
+        this(maxThreads, queueCapacity, rejectionPolicy, DEFAULT_THREAD_NAME_PREFIX);
+    }
+
+    /**
+     * Constructs a factory with the given pool size, queue depth, rejection
+     * policy, and thread name prefix. Threads are daemon threads named
+     * prefix-1, prefix-2, etc. and time out when idle.
+     *
+     * @param maxThreads Maximum number of concurrent requests
+     * @param queueCapacity Maximum number of requests waiting for a thread
+     * @param rejectionPolicy Invoked when a request cannot be queued
+     * @param threadNamePrefix Prefix of worker thread names
+     */
+    public ExecutorServiceFactory(int maxThreads, int queueCapacity,
+            RejectedExecutionHandler rejectionPolicy, String threadNamePrefix) {
+        this(newThreadPool(maxThreads, queueCapacity, rejectionPolicy, threadNamePrefix));
+    }
+
+    /**
+     * Constructs a factory that submits requests to an existing
+     * {@link ExecutorService}. The caller remains responsible for its
+     * configuration.
+     *
+     * @param executorService
+     */
+    public ExecutorServiceFactory(ExecutorService executorService) {
+        if (executorService == null) {
+            throw new IllegalArgumentException("executorService must not be null");
+        }
+        this.executorService = executorService;
+    }
+
+    /* (non-Javadoc)
+     * @see com.turbomanage.httpclient.AsyncRequestExecutorFactory#getAsyncRequestExecutor(com.turbomanage.httpclient.AsyncHttpClient, com.turbomanage.httpclient.AsyncCallback)
+     */
+    @Override
+    public AsyncRequestExecutor getAsyncRequestExecutor(AsyncHttpClient client,
+            AsyncCallback callback) {
+        return new DoHttpRequestRunnable(executorService, client, callback);
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return the {@link ExecutorService} on which requests are run
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Stops accepting new requests. Requests already submitted will run to
+     * completion.
+     */
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    private static ExecutorService newThreadPool(int maxThreads, int queueCapacity,
+            RejectedExecutionHandler rejectionPolicy, String threadNamePrefix) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("maxThreads must be at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1");
+        }
+        // Core size equals max size so that the pool grows before queueing
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueCapacity),
+                new DaemonThreadFactory(threadNamePrefix), rejectionPolicy);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Produces named daemon threads so that an idle pool never prevents the
+     * JVM from exiting.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String namePrefix;
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, namePrefix + "-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.turbomanage.httpclient;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A {@link RequestBody} that streams the contents of a file. The length is
+ * known, so the file is sent in fixed-length streaming mode.
+ *
+ * @author David M. Chandler
+ */
+public class FileRequestBody extends RequestBody {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File file;
+
+    /**
+     * Constructs a body that will send the given file.
+     *
+     * @param file
+     */
+    public FileRequestBody(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public long getContentLength() {
+        return file.length();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int nRead;
+            while ((nRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, nRead);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.turbomanage.httpclient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link RequestBody} that gzip-compresses another body as it is written.
+ * The compressed length is not known in advance, so it is sent using chunked
+ * transfer encoding. Used by {@link AbstractHttpClient} when request
+ * compression is enabled.
+ *
+ * @author David M. Chandler
+ */
+public class GzipRequestBody extends RequestBody {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final RequestBody body;
+
+    /**
+     * Constructs a body that compresses the given body.
+     *
+     * @param body Uncompressed content
+     */
+    public GzipRequestBody(RequestBody body) {
+        this.body = body;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return body.isRepeatable();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        GzipStream gzip = new GzipStream(out);
+        try {
+            body.writeTo(gzip);
+            // Not close(), which would close the connection stream
+            gzip.finish();
+        } finally {
+            gzip.end();
+        }
+    }
+
+    /**
+     * Gives access to the {@link java.util.zip.Deflater}, whose native memory
+     * is otherwise only freed by close() or finalization.
+     */
+    private static class GzipStream extends GZIPOutputStream {
+
+        GzipStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+        }
+
+        void end() {
+            def.end();
+        }
+    }
+
+}
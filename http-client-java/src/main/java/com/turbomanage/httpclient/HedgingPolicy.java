@@ -0,0 +1,169 @@
+package com.turbomanage.httpclient;
+
+/**
+ * Settings for hedged requests in {@link AsyncHttpClient}. When a GET or
+ * HEAD has not completed within the hedge delay, an identical request is
+ * sent, the first response is used, and the other request is cancelled.
+ * This trims the latency tail caused by a few slow servers, at the cost of
+ * some extra requests.
+ *
+ * <p>The delay is either fixed or, once enough responses have been seen,
+ * the given percentile of recent response times. Hedges are limited by a
+ * {@link RetryBudget} whose ratio should be well under 1; the default allows
+ * one hedge per ten requests, so load can never double.</p>
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    HedgingPolicy hedging = new HedgingPolicy(50);
+ *    hedging.setPercentile(95);
+ *    httpClient.setHedgingPolicy(hedging);
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public class HedgingPolicy {
+
+    /**
+     * Responses needed before the delay is taken from their percentile.
+     */
+    static final int MIN_SAMPLES = 20;
+    /**
+     * Responses in each window of response times.
+     */
+    static final int WINDOW = 1000;
+
+    private volatile long delay;
+    private volatile double percentile;
+    private volatile RetryBudget budget = new RetryBudget(0.1, 0);
+    private volatile LatencyHistogram current = new LatencyHistogram();
+    private volatile LatencyHistogram previous;
+    private final StripedCounter hedges = new StripedCounter();
+    private final StripedCounter wins = new StripedCounter();
+
+    /**
+     * Constructs a policy with a fixed delay.
+     *
+     * @param delay Time to wait for a response before hedging, in ms
+     */
+    public HedgingPolicy(long delay) {
+        setDelay(delay);
+    }
+
+    /**
+     * Returns the time to wait for a response before sending a hedge.
+     *
+     * @return Delay in ms
+     */
+    public long getHedgeDelay() {
+        double p = percentile;
+        if (p > 0) {
+            LatencyHistogram window = previous;
+            if (window == null) {
+                window = current;
+            }
+            if (window.getCount() >= MIN_SAMPLES) {
+                return Math.max(window.getPercentileMicros(p) / 1000, 1);
+            }
+        }
+        return delay;
+    }
+
+    void onRequest() {
+        RetryBudget b = budget;
+        if (b != null) {
+            b.onRequest();
+        }
+    }
+
+    boolean tryHedge() {
+        RetryBudget b = budget;
+        if (b != null && !b.tryRetry()) {
+            return false;
+        }
+        hedges.increment();
+        return true;
+    }
+
+    void recordResponse(long micros, boolean hedgeWon) {
+        LatencyHistogram window = current;
+        window.recordMicros(micros);
+        if (window.getCount() >= WINDOW) {
+            rotate(window);
+        }
+        if (hedgeWon) {
+            wins.increment();
+        }
+    }
+
+    private synchronized void rotate(LatencyHistogram full) {
+        if (current == full) {
+            previous = full;
+            current = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Sets the delay used until enough responses have been seen, or always
+     * if no percentile is set.
+     *
+     * @param delay in ms
+     */
+    public void setDelay(long delay) {
+        this.delay = Math.max(delay, 0);
+    }
+
+    /**
+     * Derives the delay from recent response times, e.g. 95 to hedge
+     * requests slower than 95% of others. Pass 0 to always use the fixed
+     * delay (the default).
+     *
+     * @param percentile between 0 and 100
+     */
+    public void setPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        this.percentile = percentile;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the budget that limits hedges, or null for no limit. Default 10%
+     * of requests.
+     *
+     * @param budget
+     */
+    public void setBudget(RetryBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of hedges sent
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of hedges that answered before the original request
+     */
+    public long getHedgeWinCount() {
+        return wins.sum();
+    }
+
+}
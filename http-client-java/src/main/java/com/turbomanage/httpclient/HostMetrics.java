@@ -0,0 +1,187 @@
+package com.turbomanage.httpclient;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counters and phase timings for requests to one host, collected by
+ * {@link RequestMetrics}. All methods may be called while requests are in
+ * progress.
+ *
+ * @author David M. Chandler
+ */
+public class HostMetrics {
+
+    private final String host;
+    private final StripedCounter requests = new StripedCounter();
+    private final StripedCounter errors = new StripedCounter();
+    private final StripedCounter retries = new StripedCounter();
+    private final ConcurrentMap<Integer, StripedCounter> statusCounts =
+            new ConcurrentHashMap<Integer, StripedCounter>();
+    private final LatencyHistogram connectTime = new LatencyHistogram();
+    private final LatencyHistogram writeTime = new LatencyHistogram();
+    private final LatencyHistogram serverTime = new LatencyHistogram();
+    private final LatencyHistogram readTime = new LatencyHistogram();
+    private final LatencyHistogram totalTime = new LatencyHistogram();
+
+    HostMetrics(String host) {
+        this.host = host;
+    }
+
+    void recordResponse(RequestContext context, int status) {
+        requests.increment();
+        StripedCounter counter = statusCounts.get(status);
+        if (counter == null) {
+            StripedCounter newCounter = new StripedCounter();
+            counter = statusCounts.putIfAbsent(status, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.increment();
+        record(connectTime, context, RequestPhase.PREPARE, RequestPhase.CONNECT);
+        record(writeTime, context, RequestPhase.CONNECT, RequestPhase.WRITE);
+        record(serverTime, context, RequestPhase.WRITE, RequestPhase.FIRST_BYTE);
+        record(readTime, context, RequestPhase.FIRST_BYTE, RequestPhase.READ);
+        record(totalTime, context, RequestPhase.OPEN, RequestPhase.READ);
+    }
+
+    void recordError() {
+        requests.increment();
+        errors.increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    private static void record(LatencyHistogram histogram, RequestContext context,
+            RequestPhase from, RequestPhase to) {
+        long nanos = context.getElapsedNanos(from, to);
+        if (nanos >= 0) {
+            histogram.recordMicros(nanos / 1000);
+        }
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Host name and port, or "*" for the totals of all hosts
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of attempts, including those that failed
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of attempts that failed without an HTTP status
+     */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of attempts that were retried
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @param status HTTP status code
+     * @return Number of responses with the status
+     */
+    public long getStatusCount(int status) {
+        StripedCounter counter = statusCounts.get(status);
+        return (counter == null) ? 0 : counter.sum();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of responses by HTTP status code
+     */
+    public SortedMap<Integer, Long> getStatusCounts() {
+        SortedMap<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (Map.Entry<Integer, StripedCounter> entry : statusCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Time to establish connections, including DNS and TLS
+     */
+    public LatencyHistogram getConnectTime() {
+        return connectTime;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Time to send request bodies
+     */
+    public LatencyHistogram getWriteTime() {
+        return writeTime;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Time from sending the request to receiving the status
+     */
+    public LatencyHistogram getServerTime() {
+        return serverTime;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Time to receive response bodies
+     */
+    public LatencyHistogram getReadTime() {
+        return readTime;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Time from opening the connection to reading the body
+     */
+    public LatencyHistogram getTotalTime() {
+        return totalTime;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return host + ": requests=" + getRequestCount() + " errors=" + getErrorCount()
+                + " retries=" + getRetryCount() + " status=" + getStatusCounts()
+                + "\n  connect " + connectTime + "\n  write   " + writeTime
+                + "\n  server  " + serverTime + "\n  read    " + readTime
+                + "\n  total   " + totalTime;
+    }
+
+}
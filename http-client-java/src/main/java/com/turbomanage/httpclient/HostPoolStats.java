@@ -0,0 +1,93 @@
+package com.turbomanage.httpclient;
+
+/**
+ * Connection reuse counters for one host, collected by
+ * {@link ConnectionPoolStats}. All methods may be called while requests are
+ * in progress.
+ *
+ * @author David M. Chandler
+ */
+public class HostPoolStats {
+
+    private final String host;
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final StripedCounter evictions = new StripedCounter();
+
+    HostPoolStats(String host) {
+        this.host = host;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Host name and port, or "*" for the totals of all hosts
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of requests sent on an idle connection
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of requests that opened a new connection
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of connections closed because the pool was full or
+     *         they had been idle too long
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Fraction of requests that reused a connection, or 0 if none
+     *         have been made
+     */
+    public double getHitRatio() {
+        long h = getHitCount();
+        long total = h + getMissCount();
+        return (total == 0) ? 0 : (double) h / total;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return host + ": hits=" + getHitCount() + " misses=" + getMissCount()
+                + " evictions=" + getEvictionCount()
+                + String.format(" hitRatio=%.3f", getHitRatio());
+    }
+
+}
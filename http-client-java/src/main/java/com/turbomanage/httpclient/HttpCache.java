@@ -0,0 +1,44 @@
+package com.turbomanage.httpclient;
+
+/**
+ * Storage for cached responses, keyed by absolute URL. Set one on a client
+ * with {@link AbstractHttpClient#setHttpCache(HttpCache)}; the client decides
+ * what may be stored and when an entry must be revalidated, so
+ * implementations only need to store, evict, and return entries.
+ * Implementations must be safe for use by multiple threads.
+ *
+ * See {@link MemoryHttpCache} for an in-memory LRU cache.
+ *
+ * @author David M. Chandler
+ */
+public interface HttpCache {
+
+    /**
+     * Looks up a cached response.
+     *
+     * @param url Absolute URL of the request
+     * @return Cached entry or null
+     */
+    CacheEntry get(String url);
+
+    /**
+     * Stores a response, replacing any previous entry for the URL.
+     *
+     * @param url Absolute URL of the request
+     * @param entry
+     */
+    void put(String url, CacheEntry entry);
+
+    /**
+     * Removes the entry for a URL, if any.
+     *
+     * @param url Absolute URL of the request
+     */
+    void remove(String url);
+
+    /**
+     * Removes all entries.
+     */
+    void clear();
+
+}
@@ -44,4 +44,20 @@ public class HttpPost extends HttpRequest {
         this.content = data;
     }
 
+    /**
+     * Constructs an HTTP POST request whose content is streamed from a
+     * {@link RequestBody} rather than held in memory.
+     * 
+     * @param path Partial URL
+     * @param params Optional name-value pairs to be appended to QUERY STRING
+     * @param contentType MIME type
+     * @param body Content to be streamed in the request body
+     */
+    public HttpPost(String path, ParameterMap params, String contentType, RequestBody body) {
+        super(path, params);
+        this.httpMethod = HttpMethod.POST;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
 }
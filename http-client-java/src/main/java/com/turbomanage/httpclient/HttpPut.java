@@ -39,4 +39,20 @@ public class HttpPut extends HttpRequest {
         this.content = data;
     }
 
+    /**
+     * Constructs an HTTP PUT request whose content is streamed from a
+     * {@link RequestBody} rather than held in memory.
+     * 
+     * @param path Partial URL
+     * @param params Optional, appended to query string
+     * @param contentType MIME type
+     * @param body Content to be streamed in the request body
+     */
+    public HttpPut(String path, ParameterMap params, String contentType, RequestBody body) {
+        super(path, params);
+        this.httpMethod = HttpMethod.PUT;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
 }
@@ -14,6 +14,7 @@ public abstract class HttpRequest {
     protected HttpMethod httpMethod;
     protected String contentType;
     protected byte[] content;
+    protected RequestBody body;
     
     /**
      * Constructs a request with optional params appended
@@ -49,4 +50,14 @@ public abstract class HttpRequest {
         return content;
     }
 
+    /**
+     * Returns content to be streamed to the server, if the request was
+     * constructed with a {@link RequestBody} instead of a byte[].
+     * 
+     * @return Request body or null
+     */
+    public RequestBody getBody() {
+        return body;
+    }
+
 }
@@ -17,6 +17,22 @@ public class HttpResponse {
     private Map<String, List<String>> headers;
     private byte[] body;
     
+    /**
+     * Constructs a response from its parts, as when serving it from an
+     * {@link HttpCache}.
+     * 
+     * @param status
+     * @param url
+     * @param headers
+     * @param body
+     */
+    public HttpResponse(int status, String url, Map<String, List<String>> headers, byte[] body) {
+        this.status = status;
+        this.url = url;
+        this.headers = headers;
+        this.body = body;
+    }
+
     public HttpResponse(HttpURLConnection urlConnection, byte[] body) {
         try {
             this.status = urlConnection.getResponseCode();
@@ -40,6 +56,38 @@ public class HttpResponse {
         return headers;
     }
     
+    /**
+     * Returns the first value of a header. Header names are matched without
+     * regard to case.
+     * 
+     * @param name
+     * @return Header value or null if not present
+     */
+    public String getHeader(String name) {
+        return getHeader(headers, name);
+    }
+
+    /**
+     * Returns the first value of a header in a header map. Header names are
+     * matched without regard to case.
+     * 
+     * @param headers
+     * @param name
+     * @return Header value or null if not present
+     */
+    public static String getHeader(Map<String, List<String>> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) {
+                List<String> values = header.getValue();
+                return (values == null || values.isEmpty()) ? null : values.get(0);
+            }
+        }
+        return null;
+    }
+
     public byte[] getBody() {
         return body;
     }
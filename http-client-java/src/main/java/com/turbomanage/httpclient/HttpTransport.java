@@ -0,0 +1,40 @@
+package com.turbomanage.httpclient;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Carries out a single HTTP exchange for {@link AbstractHttpClient} in
+ * place of {@link java.net.HttpURLConnection}. The client applies its own
+ * layers (cache, coalescing, retries, logging and listener events) and
+ * hands the transport a fully resolved request.
+ *
+ * <p>Transports should mark the PREPARE, CONNECT, WRITE and FIRST_BYTE
+ * phases on the {@link RequestContext} as they reach them, call
+ * {@link RequestContext#setConnected()} once connected, and honor its
+ * timeouts. Responses with error statuses such as 404 are returned normally;
+ * only I/O failures are thrown. Response bodies compressed with gzip or
+ * deflate should be decoded.</p>
+ *
+ * <p>When no transport is set (the default), the client uses
+ * {@link java.net.HttpURLConnection} through its {@link RequestHandler}.</p>
+ *
+ * @author David M. Chandler
+ */
+public interface HttpTransport {
+
+    /**
+     * Executes a request and waits for the whole response.
+     *
+     * @param httpMethod Request method
+     * @param url Absolute URL including the query string
+     * @param headers Request headers, including Content-Type if any
+     * @param body Request data, may be null
+     * @param context Timeouts and state of this attempt
+     * @return Response object
+     * @throws IOException if no HTTP status was received
+     */
+    HttpResponse execute(HttpMethod httpMethod, String url, Map<String, String> headers,
+            RequestBody body, RequestContext context) throws IOException;
+
+}
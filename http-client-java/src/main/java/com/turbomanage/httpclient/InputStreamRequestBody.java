@@ -0,0 +1,66 @@
+package com.turbomanage.httpclient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A {@link RequestBody} that copies an {@link InputStream} to the connection.
+ * The stream can only be read once, so requests with this body are not
+ * retried. The stream is closed after it has been written.
+ *
+ * @author David M. Chandler
+ */
+public class InputStreamRequestBody extends RequestBody {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final long contentLength;
+
+    /**
+     * Constructs a body of unknown length, which is sent using chunked
+     * transfer encoding.
+     *
+     * @param in
+     */
+    public InputStreamRequestBody(InputStream in) {
+        this(in, -1);
+    }
+
+    /**
+     * Constructs a body of known length, which is sent in fixed-length
+     * streaming mode.
+     *
+     * @param in
+     * @param contentLength Number of bytes in the stream or -1 if unknown
+     */
+    public InputStreamRequestBody(InputStream in, long contentLength) {
+        this.in = in;
+        this.contentLength = contentLength;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int nRead;
+            while ((nRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, nRead);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+}
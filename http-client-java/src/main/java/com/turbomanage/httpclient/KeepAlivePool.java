@@ -0,0 +1,135 @@
+package com.turbomanage.httpclient;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link HttpURLConnection} sockets alive between requests. When set
+ * on a client with {@link AbstractHttpClient#setKeepAlivePool(KeepAlivePool)},
+ * each response is drained and its stream closed instead of calling
+ * {@link HttpURLConnection#disconnect()}, which returns the socket to the
+ * JDK's keep-alive cache so that the next request to the host skips the TCP
+ * and TLS handshakes.
+ *
+ * <p>The JDK does not say whether a request reused a socket, so the pool
+ * tracks the idle sockets it has released to the cache and counts a hit
+ * when a request can take one. Sockets beyond {@link #getMaxIdlePerHost()}
+ * are disconnected, and an idle socket is no longer counted after
+ * {@link #getIdleTimeout()}. The JDK itself keeps at most
+ * <code>http.maxConnections</code> (default 5) idle sockets per host for 5
+ * seconds, or as long as the server's Keep-Alive header allows; the counts
+ * are accurate when the pool's limits are no higher than these. The cache
+ * belongs to the whole JVM, so share one pool among all clients.</p>
+ *
+ * @author David M. Chandler
+ */
+public class KeepAlivePool {
+
+    private final ConcurrentMap<String, ArrayDeque<Long>> idle =
+            new ConcurrentHashMap<String, ArrayDeque<Long>>();
+    private final ConnectionPoolStats stats = new ConnectionPoolStats();
+    private volatile int maxIdlePerHost = 5;
+    private volatile long idleTimeout = 5000;
+
+    /**
+     * Takes an idle socket, if one is still alive, for a request to the host.
+     *
+     * @param host Host name, followed by :port if not the default port
+     */
+    void acquire(String host) {
+        ArrayDeque<Long> sockets = forHost(host);
+        boolean hit;
+        synchronized (sockets) {
+            evictExpired(host, sockets, System.nanoTime());
+            // The JDK hands out the most recently used socket first
+            hit = sockets.pollLast() != null;
+        }
+        if (hit) {
+            stats.recordHit(host);
+        } else {
+            stats.recordMiss(host);
+        }
+    }
+
+    /**
+     * Returns a socket whose response has been fully read.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @return true if it may be kept, false if it must be disconnected
+     */
+    boolean release(String host) {
+        ArrayDeque<Long> sockets = forHost(host);
+        synchronized (sockets) {
+            long now = System.nanoTime();
+            evictExpired(host, sockets, now);
+            if (sockets.size() < maxIdlePerHost) {
+                sockets.addLast(now);
+                return true;
+            }
+        }
+        stats.recordEviction(host);
+        return false;
+    }
+
+    private void evictExpired(String host, ArrayDeque<Long> sockets, long now) {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        Long since;
+        while ((since = sockets.peekFirst()) != null && now - since >= timeout) {
+            sockets.pollFirst();
+            stats.recordEviction(host);
+        }
+    }
+
+    private ArrayDeque<Long> forHost(String host) {
+        ArrayDeque<Long> sockets = idle.get(host);
+        if (sockets == null) {
+            ArrayDeque<Long> newSockets = new ArrayDeque<Long>();
+            sockets = idle.putIfAbsent(host, newSockets);
+            if (sockets == null) {
+                sockets = newSockets;
+            }
+        }
+        return sockets;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Hits and misses by host
+     */
+    public ConnectionPoolStats getStats() {
+        return stats;
+    }
+
+    public int getMaxIdlePerHost() {
+        return maxIdlePerHost;
+    }
+
+    /**
+     * Sets the most idle sockets kept for one host. Default 5, the JDK's
+     * default for <code>http.maxConnections</code>.
+     *
+     * @param maxIdlePerHost
+     */
+    public void setMaxIdlePerHost(int maxIdlePerHost) {
+        this.maxIdlePerHost = Math.max(maxIdlePerHost, 0);
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets how long an idle socket is counted as reusable. Default 5
+     * seconds, the JDK's default keep-alive time.
+     *
+     * @param idleTimeout in ms
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+}
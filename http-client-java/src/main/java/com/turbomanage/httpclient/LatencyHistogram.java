@@ -0,0 +1,159 @@
+package com.turbomanage.httpclient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with a resolution of 1 microsecond.
+ * Values are counted in buckets whose width grows with the value, four per
+ * power of two, so percentiles are accurate to within 25% over a range of
+ * 1 microsecond to about 35 minutes. Like {@link StripedCounter}, updates are
+ * spread over one row of buckets per stripe of threads, so recording never
+ * blocks and concurrent readers see a close approximation.
+ *
+ * @author David M. Chandler
+ */
+public class LatencyHistogram {
+
+    /**
+     * Values of 2^31 us and up share the last bucket.
+     */
+    private static final int MAX_EXPONENT = 31;
+    private static final int BUCKETS = (MAX_EXPONENT - 1) * 4 + 4;
+    // Each row holds the count, the sum, then the buckets
+    private static final int COUNT = 0;
+    private static final int SUM = 1;
+    private static final int ROW = BUCKETS + 2;
+
+    private final AtomicLongArray cells = new AtomicLongArray(StripedCounter.STRIPES * ROW);
+
+    /**
+     * Records a duration.
+     *
+     * @param duration
+     * @param unit
+     */
+    public void record(long duration, TimeUnit unit) {
+        recordMicros(unit.toMicros(duration));
+    }
+
+    /**
+     * Records a duration. Negative values are ignored.
+     *
+     * @param micros Duration in microseconds
+     */
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            return;
+        }
+        int row = StripedCounter.stripe() * ROW;
+        cells.incrementAndGet(row + COUNT);
+        cells.addAndGet(row + SUM, micros);
+        cells.incrementAndGet(row + 2 + bucket(micros));
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of durations recorded
+     */
+    public long getCount() {
+        return sumColumn(COUNT);
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Sum of all durations recorded in microseconds
+     */
+    public long getTotalMicros() {
+        return sumColumn(SUM);
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Mean duration in microseconds, or 0 if none recorded
+     */
+    public long getMeanMicros() {
+        long count = getCount();
+        return (count == 0) ? 0 : getTotalMicros() / count;
+    }
+
+    /**
+     * Returns the duration at or below which the given percentage of
+     * recorded durations fall, rounded up to the end of its bucket.
+     *
+     * @param percentile from 0 to 100, e.g. 99.9
+     * @return Duration in microseconds, or 0 if none recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = sumColumn(2 + i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    private long sumColumn(int column) {
+        long sum = 0;
+        for (int row = 0; row < StripedCounter.STRIPES; row++) {
+            sum += cells.get(row * ROW + column);
+        }
+        return sum;
+    }
+
+    /**
+     * Values 0 to 3 have a bucket each. Above that, each power of two is
+     * split into four buckets using the two bits below the highest one.
+     */
+    static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - 2)) & 3;
+        return (exponent - 1) * 4 + sub;
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = bucket / 4 + 1;
+        int sub = bucket % 4;
+        long lower = (long) (4 + sub) << (exponent - 2);
+        return lower + (1L << (exponent - 2)) - 1;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + getMeanMicros() + "us p50="
+                + getPercentileMicros(50) + "us p90=" + getPercentileMicros(90) + "us p99="
+                + getPercentileMicros(99) + "us";
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.turbomanage.httpclient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory {@link HttpCache} that evicts least recently used entries once
+ * the total size of the cached responses exceeds a limit in bytes. Responses
+ * larger than the limit are not cached.
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    BasicHttpClient httpClient = new BasicHttpClient("http://www.google.com");
+ *    httpClient.setHttpCache(new MemoryHttpCache(4 * 1024 * 1024));
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public class MemoryHttpCache implements HttpCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, CacheEntry> entries =
+            new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * Constructs a cache holding at most maxBytes of responses.
+     *
+     * @param maxBytes
+     */
+    public MemoryHttpCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized CacheEntry get(String url) {
+        return entries.get(url);
+    }
+
+    @Override
+    public synchronized void put(String url, CacheEntry entry) {
+        remove(url);
+        long entrySize = entry.getSize();
+        if (entrySize > maxBytes) {
+            return;
+        }
+        entries.put(url, entry);
+        size += entrySize;
+        Iterator<Map.Entry<String, CacheEntry>> eldest = entries.entrySet().iterator();
+        while (size > maxBytes && eldest.hasNext()) {
+            size -= eldest.next().getValue().getSize();
+            eldest.remove();
+        }
+    }
+
+    @Override
+    public synchronized void remove(String url) {
+        CacheEntry old = entries.remove(url);
+        if (old != null) {
+            size -= old.getSize();
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Approximate number of bytes currently cached
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.turbomanage.httpclient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Content to be streamed to the server in the body of a POST or PUT request.
+ * Unlike a byte[], a request body is written directly to the connection's
+ * {@link OutputStream}, so the payload is never held in memory in full. If
+ * the length is known in advance, the client uses fixed-length streaming mode;
+ * otherwise it uses chunked transfer encoding.
+ *
+ * <p>Subclass this in an anonymous inner class to generate content on the
+ * fly:</p>
+ * <pre>
+ *    RequestBody body = new RequestBody() {
+ *        public void writeTo(OutputStream out) throws IOException {
+ *            for (Record r : records) {
+ *                out.write(r.toCsv());
+ *            }
+ *        }
+ *    };
+ *    httpClient.post("/import", "text/csv", body);
+ * </pre>
+ *
+ * See {@link FileRequestBody} and {@link InputStreamRequestBody} for
+ * common sources.
+ *
+ * @author David M. Chandler
+ */
+public abstract class RequestBody {
+
+    /**
+     * Returns the number of bytes that {@link #writeTo(OutputStream)} will
+     * write, or -1 if not known in advance.
+     *
+     * @return content length in bytes or -1
+     */
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Whether {@link #writeTo(OutputStream)} may be called more than once.
+     * Bodies that are not repeatable are never retried by
+     * {@link AsyncHttpClient}.
+     *
+     * @return true if the content can be written again
+     */
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    /**
+     * Writes the content to an open connection. Must write exactly
+     * {@link #getContentLength()} bytes if the length is not -1. There is no
+     * need to close the stream.
+     *
+     * @param out An open {@link OutputStream}
+     * @throws IOException
+     */
+    public abstract void writeTo(OutputStream out) throws IOException;
+
+}
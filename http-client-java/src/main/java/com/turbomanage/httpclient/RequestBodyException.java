@@ -0,0 +1,30 @@
+package com.turbomanage.httpclient;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link RequestBody#writeTo(java.io.OutputStream)} when the
+ * content itself cannot be produced, as when an object fails to serialize,
+ * rather than when the connection fails. Clients wrap it in an
+ * {@link HttpRequestException}, so check for it with
+ * <code>e.getCause() instanceof RequestBodyException</code>. Requests that
+ * fail this way are not retried, since every attempt would fail alike.
+ *
+ * @author David M. Chandler
+ */
+public class RequestBodyException extends IOException {
+
+    private static final long serialVersionUID = -2871739523316459406L;
+
+    /**
+     * Constructs the exception.
+     *
+     * @param message
+     * @param cause The error that prevented writing the content, may be null
+     */
+    public RequestBodyException(String message, Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.turbomanage.httpclient;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Collapses identical GET and HEAD requests that are in flight at the same
+ * time into a single exchange with the server. The first caller makes the
+ * request; callers arriving before it completes wait for it and receive the
+ * same {@link HttpResponse} instance, or the same exception. Requests are
+ * identical if they have the same method, absolute URL, and values of the
+ * headers named when constructing the coalescer.
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    // Requests with different credentials must not share a response
+ *    httpClient.setRequestCoalescer(new RequestCoalescer("Authorization"));
+ * </pre>
+ *
+ * Because the response is shared, callers must not modify the array
+ * returned by {@link HttpResponse#getBody()}.
+ *
+ * @author David M. Chandler
+ */
+public class RequestCoalescer {
+
+    private final String[] keyHeaders;
+    private final ConcurrentMap<String, FutureTask<HttpResponse>> inFlight =
+            new ConcurrentHashMap<String, FutureTask<HttpResponse>>();
+
+    /**
+     * Constructs a coalescer.
+     *
+     * @param keyHeaders Names of request headers whose values distinguish
+     *            otherwise identical requests
+     */
+    public RequestCoalescer(String... keyHeaders) {
+        this.keyHeaders = keyHeaders.clone();
+    }
+
+    /**
+     * Builds the key that identifies identical requests.
+     *
+     * @param httpMethod
+     * @param url Absolute URL
+     * @param requestHeaders Headers that will be sent with the request
+     * @return Key
+     */
+    public String getKey(HttpMethod httpMethod, String url, Map<String, String> requestHeaders) {
+        StringBuilder sb = new StringBuilder(httpMethod.getMethodName()).append(' ').append(url);
+        for (String name : keyHeaders) {
+            sb.append('\n').append(name).append(':');
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey())) {
+                    sb.append(header.getValue());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Runs the exchange unless an identical one is already in flight, in
+     * which case waits for that one instead.
+     *
+     * @param key From {@link #getKey(HttpMethod, String, Map)}
+     * @param exchange Makes the request
+     * @return The shared response
+     * @throws HttpRequestException
+     */
+    public HttpResponse execute(String key, Callable<HttpResponse> exchange)
+            throws HttpRequestException {
+        FutureTask<HttpResponse> task = new FutureTask<HttpResponse>(exchange);
+        FutureTask<HttpResponse> leader = inFlight.putIfAbsent(key, task);
+        if (leader == null) {
+            leader = task;
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+        }
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpRequestException(e, null);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof HttpRequestException) {
+                throw (HttpRequestException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new HttpRequestException((Exception) cause, null);
+        }
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of distinct requests currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+}
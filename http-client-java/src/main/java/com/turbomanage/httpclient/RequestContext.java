@@ -0,0 +1,210 @@
+package com.turbomanage.httpclient;
+
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the state of a single request attempt: the timeouts that apply to it,
+ * when it started, and whether the connection was established. A new context
+ * is created for each attempt so that one client instance can be shared by
+ * many threads without one request's settings affecting another's.
+ *
+ * @author David M. Chandler
+ */
+public class RequestContext {
+
+    private final int connectionTimeout;
+    private final int readTimeout;
+    private final long startTime;
+    private volatile boolean connected;
+    private volatile boolean cancelled;
+    private volatile HttpURLConnection connection;
+    private volatile Boolean logSampled;
+    private Map<String, String> requestHeaders;
+    private HttpMethod httpMethod;
+    private String url;
+    private long[] phaseTimes;
+
+    /**
+     * Constructs a context for an attempt starting now.
+     *
+     * @param connectionTimeout in ms
+     * @param readTimeout in ms
+     */
+    public RequestContext(int connectionTimeout, int readTimeout) {
+        this.connectionTimeout = connectionTimeout;
+        this.readTimeout = readTimeout;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Time the attempt started in ms since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Indicates connection status, used by timeout logic.
+     *
+     * @return true once the connection has been established
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Records that the connection has been established, so that any later
+     * timeout is a read timeout.
+     */
+    public void setConnected() {
+        this.connected = true;
+    }
+
+    /**
+     * Abandons this attempt. If it is using an {@link HttpURLConnection},
+     * the connection is closed so that a blocked read fails at once.
+     */
+    public void cancel() {
+        cancelled = true;
+        HttpURLConnection uc = connection;
+        if (uc != null) {
+            uc.disconnect();
+        }
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return true if {@link #cancel()} has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Records the connection of this attempt so that it can be cancelled.
+     * Disconnects it at once if already cancelled.
+     *
+     * @param uc
+     */
+    void setConnection(HttpURLConnection uc) {
+        connection = uc;
+        if (cancelled) {
+            uc.disconnect();
+        }
+    }
+
+    /**
+     * Records whether an {@link AsyncRequestLogger} sampled this attempt, so
+     * that its response is logged alike on whatever thread it completes.
+     *
+     * @param sampled
+     */
+    void setLogSampled(boolean sampled) {
+        logSampled = sampled ? Boolean.TRUE : Boolean.FALSE;
+    }
+
+    /**
+     * @return Whether the attempt was sampled for logging, or null if not
+     *         yet decided
+     */
+    Boolean getLogSampled() {
+        return logSampled;
+    }
+
+    /**
+     * Records the method and absolute URL of this attempt.
+     *
+     * @param httpMethod
+     * @param url
+     */
+    public void setRequest(HttpMethod httpMethod, String url) {
+        this.httpMethod = httpMethod;
+        this.url = url;
+    }
+
+    public HttpMethod getHttpMethod() {
+        return httpMethod;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Records the current value of {@link System#nanoTime()} as the time of
+     * a phase. Only called when a {@link RequestListener} is set.
+     *
+     * @param phase
+     */
+    public void mark(RequestPhase phase) {
+        if (phaseTimes == null) {
+            phaseTimes = new long[RequestPhase.values().length];
+        }
+        phaseTimes[phase.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @param phase
+     * @return Time of the phase from {@link System#nanoTime()}, or 0 if not
+     *         reached
+     */
+    public long getPhaseTime(RequestPhase phase) {
+        return (phaseTimes == null) ? 0 : phaseTimes[phase.ordinal()];
+    }
+
+    /**
+     * Returns the time elapsed between two phases.
+     *
+     * @param from Earlier phase
+     * @param to Later phase
+     * @return Elapsed time in ns, or -1 if either phase was not reached
+     */
+    public long getElapsedNanos(RequestPhase from, RequestPhase to) {
+        long start = getPhaseTime(from);
+        long end = getPhaseTime(to);
+        if (start == 0 || end == 0) {
+            return -1;
+        }
+        return end - start;
+    }
+
+    /**
+     * Adds a header to be sent with this attempt only, such as a conditional
+     * header added by an {@link HttpCache}. These are applied after the
+     * client's own headers and replace any with the same name.
+     *
+     * @param name
+     * @param value
+     */
+    public void addRequestHeader(String name, String value) {
+        if (requestHeaders == null) {
+            requestHeaders = new LinkedHashMap<String, String>();
+        }
+        requestHeaders.put(name, value);
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Headers for this attempt only, may be null
+     */
+    public Map<String, String> getRequestHeaders() {
+        return requestHeaders;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.turbomanage.httpclient;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Receives events at each phase of a request attempt made by
+ * {@link AbstractHttpClient}. The time of each phase is available from
+ * {@link RequestContext#getPhaseTime(RequestPhase)} by the time the listener
+ * is called. See {@link RequestMetrics} for an implementation which
+ * aggregates timings by host and status.
+ *
+ * <p>Methods are invoked synchronously on the thread making the request, so
+ * implementations must be thread-safe, return quickly and not throw.
+ * Responses served from an {@link HttpCache} or shared by a
+ * {@link RequestCoalescer} make no attempt and so generate no events.</p>
+ *
+ * @author David M. Chandler
+ */
+public interface RequestListener {
+
+    /**
+     * A connection is about to be opened. The method and URL are available
+     * from the context.
+     *
+     * @param context
+     */
+    void onOpen(RequestContext context);
+
+    /**
+     * The connection has been prepared but not connected.
+     *
+     * @param context
+     * @param urlConnection
+     */
+    void onPrepare(RequestContext context, HttpURLConnection urlConnection);
+
+    /**
+     * The connection has been established.
+     *
+     * @param context
+     * @param urlConnection
+     */
+    void onConnect(RequestContext context, HttpURLConnection urlConnection);
+
+    /**
+     * The request body, if any, has been written. Called even if there is
+     * no body.
+     *
+     * @param context
+     * @param urlConnection
+     */
+    void onWriteComplete(RequestContext context, HttpURLConnection urlConnection);
+
+    /**
+     * The response status and headers have been received.
+     *
+     * @param context
+     * @param urlConnection
+     */
+    void onFirstByte(RequestContext context, HttpURLConnection urlConnection);
+
+    /**
+     * The response body has been read. Not called for responses from
+     * {@link AbstractHttpClient#executeStream(HttpRequest)}, whose bodies
+     * are read by the caller.
+     *
+     * @param context
+     * @param httpResponse may be an error response such as 404
+     */
+    void onReadComplete(RequestContext context, HttpResponse httpResponse);
+
+    /**
+     * An attempt failed and {@link AsyncHttpClient} is about to try again.
+     *
+     * @param context The context of the failed attempt
+     * @param attempt Number of the failed attempt, starting at 1
+     * @param cause
+     */
+    void onRetry(RequestContext context, int attempt, HttpRequestException cause);
+
+    /**
+     * The attempt failed without receiving an HTTP status.
+     *
+     * @param context
+     * @param e
+     */
+    void onError(RequestContext context, HttpRequestException e);
+
+}
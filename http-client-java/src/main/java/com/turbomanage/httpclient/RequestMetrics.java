@@ -0,0 +1,162 @@
+package com.turbomanage.httpclient;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link RequestListener} that counts requests by host and status and
+ * keeps histograms of the time spent connecting, writing, waiting for the
+ * server, and reading. Recording is lock-free, so one instance may be shared
+ * by all clients in an application.
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    RequestMetrics metrics = new RequestMetrics();
+ *    httpClient.setRequestListener(metrics);
+ *    ...
+ *    HostMetrics api = metrics.getHostMetrics("api.example.com");
+ *    long p99 = api.getServerTime().getPercentileMicros(99);
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public class RequestMetrics implements RequestListener {
+
+    private final ConcurrentMap<String, HostMetrics> hosts =
+            new ConcurrentHashMap<String, HostMetrics>();
+    private final HostMetrics totals = new HostMetrics("*");
+
+    @Override
+    public void onOpen(RequestContext context) {
+    }
+
+    @Override
+    public void onPrepare(RequestContext context, HttpURLConnection urlConnection) {
+    }
+
+    @Override
+    public void onConnect(RequestContext context, HttpURLConnection urlConnection) {
+    }
+
+    @Override
+    public void onWriteComplete(RequestContext context, HttpURLConnection urlConnection) {
+    }
+
+    @Override
+    public void onFirstByte(RequestContext context, HttpURLConnection urlConnection) {
+    }
+
+    @Override
+    public void onReadComplete(RequestContext context, HttpResponse httpResponse) {
+        int status = (httpResponse == null) ? 0 : httpResponse.getStatus();
+        forHost(context).recordResponse(context, status);
+        totals.recordResponse(context, status);
+    }
+
+    @Override
+    public void onRetry(RequestContext context, int attempt, HttpRequestException cause) {
+        forHost(context).recordRetry();
+        totals.recordRetry();
+    }
+
+    @Override
+    public void onError(RequestContext context, HttpRequestException e) {
+        forHost(context).recordError();
+        totals.recordError();
+    }
+
+    /**
+     * Returns the metrics for one host.
+     *
+     * @param host Host name, followed by :port if not the default port
+     * @return Metrics, or null if no requests have been made to the host
+     */
+    public HostMetrics getHostMetrics(String host) {
+        return hosts.get(host);
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Metrics for each host that has been requested, sorted by host
+     */
+    public List<HostMetrics> getHostMetrics() {
+        List<HostMetrics> list = new ArrayList<HostMetrics>(hosts.values());
+        Collections.sort(list, new Comparator<HostMetrics>() {
+            @Override
+            public int compare(HostMetrics a, HostMetrics b) {
+                return a.getHost().compareTo(b.getHost());
+            }
+        });
+        return list;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Metrics for all hosts combined
+     */
+    public HostMetrics getTotals() {
+        return totals;
+    }
+
+    private HostMetrics forHost(RequestContext context) {
+        String host = getHost(context.getUrl());
+        HostMetrics metrics = hosts.get(host);
+        if (metrics == null) {
+            HostMetrics newMetrics = new HostMetrics(host);
+            metrics = hosts.putIfAbsent(host, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Extracts the authority from a URL without the cost of parsing it.
+     *
+     * @param url Absolute URL
+     * @return host[:port], or the whole URL if it has no scheme
+     */
+    static String getHost(String url) {
+        if (url == null) {
+            return "";
+        }
+        int start = url.indexOf("://");
+        if (start < 0) {
+            return url;
+        }
+        start += 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        String authority = url.substring(start, end);
+        int at = authority.lastIndexOf('@');
+        return (at < 0) ? authority : authority.substring(at + 1);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (HostMetrics metrics : getHostMetrics()) {
+            sb.append(metrics).append('\n');
+        }
+        return sb.append(totals).toString();
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.turbomanage.httpclient;
+
+/**
+ * Points in the lifecycle of a single request attempt at which a
+ * {@link RequestListener} is notified. The time of each is recorded in the
+ * {@link RequestContext}, so the time spent in a phase is the difference
+ * between the time of the phase and the one before it:
+ *
+ * <ul>
+ * <li>PREPARE to CONNECT: DNS lookup, TCP and TLS handshakes, or waiting
+ * for a pooled connection</li>
+ * <li>CONNECT to WRITE: sending the request body</li>
+ * <li>WRITE to FIRST_BYTE: server think time</li>
+ * <li>FIRST_BYTE to READ: transferring the response body</li>
+ * </ul>
+ *
+ * @author David M. Chandler
+ */
+public enum RequestPhase {
+    /** The attempt started and a connection is about to be opened */
+    OPEN,
+    /** Timeouts, method and headers have been set on the connection */
+    PREPARE,
+    /** The connection has been established */
+    CONNECT,
+    /** The request body, if any, has been written */
+    WRITE,
+    /** The response status and headers have been received */
+    FIRST_BYTE,
+    /** The response body has been read */
+    READ
+}
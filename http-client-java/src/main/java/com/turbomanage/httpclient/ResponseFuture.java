@@ -0,0 +1,174 @@
+package com.turbomanage.httpclient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending result of a request made with one of the *Async methods of
+ * {@link AsyncHttpClient}. Exceptions thrown by the request are delivered as
+ * an {@link ExecutionException} from {@link #get()} rather than to an
+ * onError method. Callbacks may be attached with
+ * {@link #addCallback(AsyncCallback)} in order to chain further work without
+ * blocking a thread while waiting.
+ *
+ * <p>Sample usage (fan out, then join with a deadline):</p>
+ * <pre>
+ *    ResponseFuture a = httpClient.getAsync("/a", null);
+ *    ResponseFuture b = httpClient.getAsync("/b", null);
+ *    HttpResponse resA = a.get(2, TimeUnit.SECONDS);
+ *    HttpResponse resB = b.get(2, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public class ResponseFuture implements Future<HttpResponse> {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private List<AsyncCallback> callbacks = new ArrayList<AsyncCallback>();
+    private HttpResponse httpResponse;
+    private Exception exception;
+    private boolean cancelled;
+
+    /**
+     * Completes this future with a response and invokes any callbacks on the
+     * calling thread. Has no effect if already done.
+     *
+     * @param httpResponse may be null
+     * @return true if this call completed the future
+     */
+    public boolean complete(HttpResponse httpResponse) {
+        List<AsyncCallback> pending;
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+            this.httpResponse = httpResponse;
+            pending = release();
+        }
+        for (AsyncCallback callback : pending) {
+            callback.onComplete(httpResponse);
+        }
+        return true;
+    }
+
+    /**
+     * Completes this future exceptionally and invokes any callbacks on the
+     * calling thread. Has no effect if already done.
+     *
+     * @param e The exception that was thrown
+     * @return true if this call completed the future
+     */
+    public boolean fail(Exception e) {
+        return fail(e, false);
+    }
+
+    /**
+     * Completes this future exceptionally, marking it cancelled in the same
+     * step if asked, so that a concurrent {@link #complete(HttpResponse)}
+     * either wins outright or has no effect.
+     */
+    private boolean fail(Exception e, boolean cancel) {
+        List<AsyncCallback> pending;
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+            this.exception = e;
+            this.cancelled = cancel;
+            pending = release();
+        }
+        for (AsyncCallback callback : pending) {
+            callback.onError(e);
+        }
+        return true;
+    }
+
+    /**
+     * Registers a callback to be invoked when this future completes. If it has
+     * already completed, the callback is invoked immediately on the calling
+     * thread.
+     *
+     * @param callback
+     * @return this future for method chaining
+     */
+    public ResponseFuture addCallback(AsyncCallback callback) {
+        synchronized (this) {
+            if (!isDone()) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        if (exception != null) {
+            callback.onError(exception);
+        } else {
+            callback.onComplete(httpResponse);
+        }
+        return this;
+    }
+
+    /**
+     * Marks this future cancelled. The request itself is not interrupted, but
+     * its result will be discarded and callbacks receive a
+     * {@link CancellationException}.
+     *
+     * @see java.util.concurrent.Future#cancel(boolean)
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return fail(new CancellationException(), true);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    @Override
+    public HttpResponse get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return result();
+    }
+
+    @Override
+    public HttpResponse get(long timeout, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result();
+    }
+
+    private synchronized HttpResponse result() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+        return httpResponse;
+    }
+
+    /**
+     * Must be called while holding the lock.
+     *
+     * @return callbacks registered so far
+     */
+    private List<AsyncCallback> release() {
+        List<AsyncCallback> pending = callbacks;
+        callbacks = null;
+        latch.countDown();
+        return pending;
+    }
+
+}
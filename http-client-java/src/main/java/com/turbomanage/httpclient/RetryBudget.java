@@ -0,0 +1,121 @@
+package com.turbomanage.httpclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a share of all requests so that, when a server fails,
+ * clients do not multiply its load. Each request adds a fraction of a retry
+ * to the budget and each retry spends a whole one. A small number of
+ * retries per second is always allowed so that quiet clients can still
+ * retry. Unused budget accumulates for up to {@link #MAX_BALANCE} retries.
+ * Share one budget among all clients that call the same service.
+ *
+ * @author David M. Chandler
+ */
+public class RetryBudget {
+
+    /**
+     * Most retries that can be saved up while requests succeed.
+     */
+    public static final int MAX_BALANCE = 100;
+
+    /**
+     * Budget is kept in thousandths of a retry.
+     */
+    private static final long UNIT = 1000;
+
+    private final long deposit;
+    private final int minRetriesPerSecond;
+    private final AtomicLong balance = new AtomicLong();
+    /**
+     * Second in the high 32 bits, retries taken from the per-second
+     * allowance in that second in the low 32 bits.
+     */
+    private final AtomicLong reserve = new AtomicLong();
+    private final StripedCounter rejected = new StripedCounter();
+
+    /**
+     * Constructs a budget.
+     *
+     * @param ratio Retries allowed per request, e.g. 0.2 for 20%
+     * @param minRetriesPerSecond Retries allowed regardless of traffic
+     */
+    public RetryBudget(double ratio, int minRetriesPerSecond) {
+        if (ratio < 0 || ratio > 1000) {
+            throw new IllegalArgumentException("ratio must be between 0 and 1000");
+        }
+        this.deposit = (long) (ratio * UNIT);
+        this.minRetriesPerSecond = Math.max(minRetriesPerSecond, 0);
+    }
+
+    /**
+     * Adds a new request's share to the budget.
+     */
+    public void onRequest() {
+        if (deposit == 0) {
+            return;
+        }
+        long max = MAX_BALANCE * UNIT;
+        long current;
+        do {
+            current = balance.get();
+            if (current >= max) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(current + deposit, max)));
+    }
+
+    /**
+     * Spends one retry if the budget allows it.
+     *
+     * @return true if the retry may proceed
+     */
+    public boolean tryRetry() {
+        long current;
+        while ((current = balance.get()) >= UNIT) {
+            if (balance.compareAndSet(current, current - UNIT)) {
+                return true;
+            }
+        }
+        if (tryReserve()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    private boolean tryReserve() {
+        long second = System.nanoTime() / 1000000000L;
+        while (true) {
+            long current = reserve.get();
+            long used = (current >>> 32 == (second & 0xFFFFFFFFL)) ? current & 0xFFFFFFFFL : 0;
+            if (used >= minRetriesPerSecond) {
+                return false;
+            }
+            long next = ((second & 0xFFFFFFFFL) << 32) | (used + 1);
+            if (reserve.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of retries the budget currently allows, not counting
+     *         the per-second allowance
+     */
+    public long getAvailable() {
+        return balance.get() / UNIT;
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Number of retries refused since the budget was created
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.turbomanage.httpclient;
+
+/**
+ * Decides whether and when {@link AsyncHttpClient} retries a failed request,
+ * and how long each attempt may take to connect. One instance serves every
+ * request of a client, so implementations must be thread-safe. See
+ * {@link BasicRetryPolicy} for the default.
+ *
+ * @author David M. Chandler
+ */
+public interface RetryPolicy {
+
+    /**
+     * Notifies the policy of each new request, not counting retries, so that
+     * it can keep retries in proportion to traffic.
+     *
+     * @param httpRequest
+     */
+    void onRequest(HttpRequest httpRequest);
+
+    /**
+     * Returns the connection timeout for an attempt.
+     *
+     * @param attempt Number of attempts already made, 0 for the first
+     * @return Timeout in ms
+     */
+    int getConnectionTimeout(int attempt);
+
+    /**
+     * Decides whether to retry after an attempt that threw or received a
+     * response. The client never asks after its last allowed attempt, nor
+     * for requests whose body cannot be written twice, nor after a
+     * {@link CircuitOpenException} or {@link RequestBodyException}.
+     *
+     * @param httpRequest The request
+     * @param attempt Number of attempts made so far, 1 after the first
+     * @param lastDelay Delay in ms before the attempt that failed, 0 after
+     *            the first
+     * @param httpResponse Response received, or null if the attempt threw
+     * @param e Exception thrown, or null if a response was received
+     * @param recoverable true if the attempt timed out or the
+     *            {@link RequestHandler} reported the exception as
+     *            recoverable; always false for a response
+     * @return Delay in ms before the next attempt, or -1 not to retry
+     */
+    long getRetryDelay(HttpRequest httpRequest, int attempt, long lastDelay,
+            HttpResponse httpResponse, HttpRequestException e, boolean recoverable);
+
+}
@@ -0,0 +1,88 @@
+package com.turbomanage.httpclient;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Each
+ * slot carries a sequence number which tells producers whether it is free
+ * and the consumer whether it has been filled, so producers contend only on
+ * the tail counter and never wait for each other. When full, offers fail
+ * rather than block.
+ *
+ * @author David M. Chandler
+ */
+class RingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only accessed by the consumer thread
+    private long head;
+
+    /**
+     * @param capacity Rounded up to a power of two
+     */
+    RingBuffer(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<E>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element if there is room. May be called from any thread.
+     *
+     * @param e
+     * @return false if the buffer is full
+     */
+    boolean offer(E e) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long available = sequences.get(index) - pos;
+            if (available == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.lazySet(index, e);
+                    // Publishes the element to the consumer
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (available < 0) {
+                return false;
+            } else {
+                // Another producer took this slot
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element. Must only be called from the consumer
+     * thread.
+     *
+     * @return Element or null if empty
+     */
+    E poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        E e = items.get(index);
+        items.lazySet(index, null);
+        // Frees the slot for the producer one lap ahead
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return e;
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.turbomanage.httpclient;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An {@link HttpResponse} whose body has not been read. Status and headers
+ * are available as usual, but {@link #getBody()} returns null; instead the
+ * caller reads the live connection stream from {@link #getInputStream()} or
+ * copies it to a sink with one of the transferTo methods. Memory use is
+ * therefore independent of the size of the response.
+ *
+ * <p>The connection is released as soon as the body has been read to the end
+ * or the response is closed, whichever happens first. Callers must always
+ * close the response, preferably in a finally block:</p>
+ * <pre>
+ *    StreamingHttpResponse res = httpClient.getStream("/export", null);
+ *    try {
+ *        res.transferTo(new FileOutputStream(file));
+ *    } finally {
+ *        res.close();
+ *    }
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public class StreamingHttpResponse extends HttpResponse implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final HttpURLConnection urlConnection;
+    private final InputStream in;
+    private final KeepAlivePool pool;
+    private final String host;
+    private boolean closed;
+
+    /**
+     * Constructs a response around an open connection.
+     *
+     * @param urlConnection A connected {@link HttpURLConnection}
+     * @param in The input or error stream of the connection, may be null
+     */
+    public StreamingHttpResponse(HttpURLConnection urlConnection, InputStream in) {
+        this(urlConnection, in, null, null);
+    }
+
+    /**
+     * Constructs a response whose connection is returned to the pool, if not
+     * null, when the body has been read.
+     *
+     * @param urlConnection A connected {@link HttpURLConnection}
+     * @param in The input or error stream of the connection, may be null
+     * @param pool Pool that counted the request, or null
+     * @param host Host name, followed by :port if not the default port
+     */
+    StreamingHttpResponse(HttpURLConnection urlConnection, InputStream in, KeepAlivePool pool,
+            String host) {
+        super(urlConnection, null);
+        this.urlConnection = urlConnection;
+        this.in = (in == null) ? null : new BodyInputStream(in);
+        this.pool = pool;
+        this.host = host;
+    }
+
+    /**
+     * Returns the live response body. Reading to the end or closing the
+     * stream releases the connection.
+     *
+     * @return Body stream, or null if the response has no body
+     */
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    /**
+     * Copies the remaining body to the supplied stream using a fixed-size
+     * buffer and then releases the connection. The output stream is not
+     * closed.
+     *
+     * @param out
+     * @return Number of bytes copied
+     * @throws IOException
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        long count = 0;
+        try {
+            if (in != null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int nRead;
+                while ((nRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, nRead);
+                    count += nRead;
+                }
+            }
+        } finally {
+            close();
+        }
+        return count;
+    }
+
+    /**
+     * Copies the remaining body to the supplied channel using a fixed-size
+     * buffer and then releases the connection. The channel is not closed.
+     *
+     * @param channel
+     * @return Number of bytes copied
+     * @throws IOException
+     */
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        long count = 0;
+        try {
+            if (in != null) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                ByteBuffer bb = ByteBuffer.wrap(buffer);
+                int nRead;
+                while ((nRead = in.read(buffer)) != -1) {
+                    bb.clear();
+                    bb.limit(nRead);
+                    while (bb.hasRemaining()) {
+                        channel.write(bb);
+                    }
+                    count += nRead;
+                }
+            }
+        } finally {
+            close();
+        }
+        return count;
+    }
+
+    /**
+     * Whether the connection has been released.
+     *
+     * @return true if closed
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the body stream and releases the connection. Safe to call more
+     * than once. If the client has a {@link KeepAlivePool}, a body that has
+     * been read to the end, or is short enough to drain, returns the socket
+     * to the keep-alive cache instead of disconnecting.
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        boolean reusable = false;
+        if (in != null) {
+            try {
+                BodyInputStream body = (BodyInputStream) in;
+                reusable = pool != null && body.drain();
+                body.closeStream();
+            } catch (Exception e) {
+                // Swallow, nothing more to read
+                reusable = false;
+            }
+        }
+        AbstractHttpClient.releaseConnection(urlConnection, pool, host, reusable);
+    }
+
+    /**
+     * Releases the connection at end of stream or when closed.
+     */
+    private class BodyInputStream extends FilterInputStream {
+
+        private volatile boolean eof;
+
+        BodyInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                eof = true;
+                StreamingHttpResponse.this.close();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int nRead = super.read(b, off, len);
+            if (nRead == -1) {
+                eof = true;
+                StreamingHttpResponse.this.close();
+            }
+            return nRead;
+        }
+
+        @Override
+        public void close() {
+            StreamingHttpResponse.this.close();
+        }
+
+        /**
+         * @return true if the end of the stream was reached
+         */
+        boolean drain() {
+            // The JDK may close its stream at the end, so do not read again
+            return eof || AbstractHttpClient.drain(super.in);
+        }
+
+        void closeStream() throws IOException {
+            super.close();
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.turbomanage.httpclient;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter for values updated by many threads and read rarely. Updates are
+ * spread over several cells, chosen by thread, which are summed on read.
+ * Threads therefore seldom contend for the same cell and never block. This
+ * is the technique of java.util.concurrent.atomic.LongAdder, which is not
+ * available on all platforms supported by this library.
+ *
+ * @author David M. Chandler
+ */
+class StripedCounter {
+
+    /**
+     * Number of longs between cells, so that each is on its own cache line.
+     */
+    private static final int PAD = 8;
+
+    static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long x) {
+        cells.addAndGet(stripe() * PAD, x);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the stripe for the calling thread. Pool threads are numbered
+     * consecutively, so this spreads them evenly.
+     *
+     * @return Index from 0 to STRIPES - 1
+     */
+    static int stripe() {
+        return (int) Thread.currentThread().getId() & (STRIPES - 1);
+    }
+
+    /**
+     * Returns the number of processors rounded up to a power of two, at most
+     * 16.
+     */
+    private static int stripes() {
+        int n = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+        int stripes = 1;
+        while (stripes < n) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.turbomanage.httpclient;
+
+/**
+ * {@link HttpCache} that combines a fast first tier, typically a
+ * {@link MemoryHttpCache}, with a larger persistent second tier such as a
+ * {@link DiskHttpCache}. Entries are written to both tiers, and entries found
+ * only in the second tier are copied into the first on access.
+ *
+ * @author David M. Chandler
+ */
+public class TieredHttpCache implements HttpCache {
+
+    private final HttpCache first;
+    private final HttpCache second;
+
+    /**
+     * Constructs a cache that looks in first, then second.
+     *
+     * @param first
+     * @param second
+     */
+    public TieredHttpCache(HttpCache first, HttpCache second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public CacheEntry get(String url) {
+        CacheEntry entry = first.get(url);
+        if (entry == null) {
+            entry = second.get(url);
+            if (entry != null) {
+                first.put(url, entry);
+            }
+        }
+        return entry;
+    }
+
+    @Override
+    public void put(String url, CacheEntry entry) {
+        first.put(url, entry);
+        second.put(url, entry);
+    }
+
+    @Override
+    public void remove(String url) {
+        first.remove(url);
+        second.remove(url);
+    }
+
+    @Override
+    public void clear() {
+        first.clear();
+        second.clear();
+    }
+
+}
@@ -1,32 +1,173 @@
 package com.turbomanage.httpclient.json;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.turbomanage.httpclient.HttpResponse;
+import com.turbomanage.httpclient.RequestBodyException;
 import com.turbomanage.httpclient.rest.ObjectFactory;
+import com.turbomanage.httpclient.rest.ObjectIterator;
 
+/**
+ * Converts objects to and from JSON with Jackson. For each type, an
+ * {@link ObjectReader} and {@link ObjectWriter} with the root
+ * (de)serializer already resolved are kept in a concurrent cache, so that
+ * repeated conversions skip the lookups that {@link ObjectMapper#readValue}
+ * and {@link ObjectMapper#writeValueAsBytes(Object)} make on every call.
+ *
+ * <p>Instances made with the default constructor share one
+ * {@link ObjectMapper} and one cache, so creating a mapper per client is
+ * cheap. To configure Jackson, pass a fully configured mapper to
+ * {@link #DefaultJsonMapper(ObjectMapper)} and do not change it
+ * afterwards.</p>
+ *
+ * @author David M. Chandler
+ */
 public class DefaultJsonMapper extends ObjectFactory<JsonType> {
 
-	private ObjectMapper om = new ObjectMapper();
-	
+	private static final ObjectMapper SHARED_MAPPER = new ObjectMapper();
+	private static final ConcurrentMap<Class<?>, ObjectReader> SHARED_READERS =
+			new ConcurrentHashMap<Class<?>, ObjectReader>();
+	private static final ConcurrentMap<Class<?>, ObjectWriter> SHARED_WRITERS =
+			new ConcurrentHashMap<Class<?>, ObjectWriter>();
+
+	private final ObjectMapper om;
+	private final ConcurrentMap<Class<?>, ObjectReader> readers;
+	private final ConcurrentMap<Class<?>, ObjectWriter> writers;
+
+	/**
+	 * Constructs a mapper that uses the shared {@link ObjectMapper} and
+	 * cache.
+	 */
+	public DefaultJsonMapper() {
+		this(SHARED_MAPPER, SHARED_READERS, SHARED_WRITERS);
+	}
+
+	/**
+	 * Constructs a mapper with its own {@link ObjectMapper} and cache.
+	 * 
+	 * @param om A configured mapper, not to be changed afterwards
+	 */
+	public DefaultJsonMapper(ObjectMapper om) {
+		this(om, new ConcurrentHashMap<Class<?>, ObjectReader>(),
+				new ConcurrentHashMap<Class<?>, ObjectWriter>());
+	}
+
+	private DefaultJsonMapper(ObjectMapper om, ConcurrentMap<Class<?>, ObjectReader> readers,
+			ConcurrentMap<Class<?>, ObjectWriter> writers) {
+		this.om = om;
+		this.readers = readers;
+		this.writers = writers;
+	}
+
+	/**
+	 * Returns the cached reader for a type, creating it on first use.
+	 * 
+	 * @param type
+	 * @return Reader with its root deserializer resolved
+	 */
+	protected ObjectReader readerFor(Class<?> type) {
+		ObjectReader reader = readers.get(type);
+		if (reader == null) {
+			reader = om.readerFor(type);
+			ObjectReader existing = readers.putIfAbsent(type, reader);
+			if (existing != null) {
+				reader = existing;
+			}
+		}
+		return reader;
+	}
+
+	/**
+	 * Returns the cached writer for a type, creating it on first use. The
+	 * writer leaves streams open after writing to them.
+	 * 
+	 * @param type
+	 * @return Writer with its root serializer resolved
+	 */
+	protected ObjectWriter writerFor(Class<?> type) {
+		ObjectWriter writer = writers.get(type);
+		if (writer == null) {
+			writer = om.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			ObjectWriter existing = writers.putIfAbsent(type, writer);
+			if (existing != null) {
+				writer = existing;
+			}
+		}
+		return writer;
+	}
+
 	@Override
 	public <T> byte[] toBytes(T obj) {
 		try {
-			return om.writeValueAsBytes(obj);
+			if (obj == null) {
+				return om.writeValueAsBytes(null);
+			}
+			return writerFor(obj.getClass()).writeValueAsBytes(obj);
 		} catch (JsonProcessingException e) {
 			e.printStackTrace();
 		}
 		return null;
 	}
 
+	/**
+	 * Generates the JSON directly onto the stream through Jackson's own
+	 * small buffer, so no byte[] of the whole document is built. Errors
+	 * from the stream are thrown as they are, and serialization errors as a
+	 * {@link RequestBodyException}.
+	 */
+	@Override
+	public <T> void writeTo(T obj, OutputStream out) throws IOException {
+		if (obj == null) {
+			out.write(toBytes(null));
+			return;
+		}
+		try {
+			writerFor(obj.getClass()).writeValue(out, obj);
+		} catch (JsonProcessingException e) {
+			throw new RequestBodyException("Could not serialize " + obj.getClass().getName(), e);
+		}
+	}
+
+	/**
+	 * Joins the objects into a JSON array.
+	 */
+	@Override
+	public byte[] toBatchBytes(List<byte[]> items) {
+		int length = 1 + items.size();
+		for (byte[] item : items) {
+			length += item.length;
+		}
+		byte[] body = new byte[Math.max(length, 2)];
+		int pos = 0;
+		body[pos++] = '[';
+		for (byte[] item : items) {
+			if (pos > 1) {
+				body[pos++] = ',';
+			}
+			System.arraycopy(item, 0, body, pos, item.length);
+			pos += item.length;
+		}
+		body[pos] = ']';
+		return body;
+	}
+
 	@Override
 	public <T> T toObj(byte[] bytes, Class<T> responseType) {
 		try {
-			T obj = om.readValue(bytes, responseType);
+			T obj = readerFor(responseType).readValue(bytes);
 			return obj;
 		} catch (JsonParseException e) {
 			e.printStackTrace();
@@ -38,6 +179,64 @@ public class DefaultJsonMapper extends ObjectFactory<JsonType> {
 		return null;
 	}
 
+	/**
+	 * Parses the object as the stream is read, without buffering the
+	 * document.
+	 */
+	@Override
+	public <T> T toObj(InputStream in, Class<T> responseType) throws IOException {
+		try {
+			return readerFor(responseType).readValue(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Decodes the elements of a top-level JSON array one at a time as the
+	 * stream is read. The stream is closed after the last element.
+	 */
+	@Override
+	public <T> ObjectIterator<T> toIterator(InputStream in, Class<T> elementType)
+			throws IOException {
+		final MappingIterator<T> it;
+		try {
+			it = readerFor(elementType).readValues(in);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return new ObjectIterator<T>() {
+			@Override
+			public boolean hasNext() {
+				if (it.hasNext()) {
+					return true;
+				}
+				close();
+				return false;
+			}
+
+			@Override
+			public T next() {
+				return it.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void close() {
+				try {
+					it.close();
+				} catch (IOException e) {
+					// Nothing more to read
+				}
+			}
+		};
+	}
+
 	@Override
 	public JsonResponse wrapResponse(HttpResponse res) {
 		return new JsonResponse(res, this);
@@ -0,0 +1,41 @@
+package com.turbomanage.httpclient.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A pooled socket to one host. Carries at most one exchange at a time.
+ * Only accessed by the loop thread.
+ *
+ * @author David M. Chandler
+ */
+class Connection {
+
+    final HostPool pool;
+    final SocketChannel channel;
+    SelectionKey key;
+    Exchange exchange;
+    boolean connected;
+    /**
+     * When the connection was returned to the pool, from System.nanoTime().
+     */
+    long idleSince;
+
+    Connection(HostPool pool, SocketChannel channel) {
+        this.pool = pool;
+        this.channel = channel;
+    }
+
+    void close() {
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more to do
+        }
+    }
+
+}
@@ -0,0 +1,438 @@
+package com.turbomanage.httpclient.nio;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.turbomanage.httpclient.HttpResponse;
+import com.turbomanage.httpclient.RequestPhase;
+
+/**
+ * A thread driving many connections with one {@link Selector}. Exchanges are
+ * submitted from any thread through a lock-free queue; everything else,
+ * including the connection pools, belongs to the loop thread and needs no
+ * locking.
+ *
+ * @author David M. Chandler
+ */
+class EventLoop implements Runnable {
+
+    /**
+     * How often timeouts and idle connections are checked.
+     */
+    private static final long SWEEP_MS = 50;
+
+    private final NioHttpTransport transport;
+    private final Selector selector;
+    private final Queue<Exchange> submitted = new ConcurrentLinkedQueue<Exchange>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final Map<String, HostPool> pools = new HashMap<String, HostPool>();
+    private final Set<Connection> busy = new HashSet<Connection>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final Thread thread;
+    private volatile boolean closed;
+    private long nextSweep;
+
+    EventLoop(NioHttpTransport transport, String name) throws IOException {
+        this.transport = transport;
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues an exchange. May be called from any thread.
+     *
+     * @param exchange
+     */
+    void submit(Exchange exchange) {
+        if (closed) {
+            exchange.future.fail(new IOException("Transport closed"));
+            return;
+        }
+        submitted.add(exchange);
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    boolean isLoopThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                selector.select(SWEEP_MS);
+                wakeupPending.set(false);
+                Exchange exchange;
+                while ((exchange = submitted.poll()) != null) {
+                    dispatch(exchange);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+                long now = System.nanoTime();
+                if (now - nextSweep >= 0) {
+                    sweep(now);
+                    nextSweep = now + TimeUnit.MILLISECONDS.toNanos(SWEEP_MS);
+                }
+            }
+        } catch (IOException e) {
+            // Selector failed, fall through to shut down
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void dispatch(Exchange exchange) {
+        exchange.context.mark(RequestPhase.PREPARE);
+        exchange.deadline = deadline(System.nanoTime(), exchange.context.getConnectionTimeout());
+        HostPool pool = pools.get(exchange.hostKey);
+        if (pool == null) {
+            pool = new HostPool(exchange.hostKey);
+            pools.put(exchange.hostKey, pool);
+        }
+        acquire(pool, exchange);
+    }
+
+    /**
+     * Starts the exchange on an idle connection, a new one, or queues it if
+     * the host is at its connection limit.
+     */
+    private void acquire(HostPool pool, Exchange exchange) {
+        Connection connection;
+        while ((connection = pool.idle.pollLast()) != null) {
+            if (connection.channel.isOpen()) {
+                exchange.reusedConnection = true;
+                transport.getPoolStats().recordHit(pool.hostKey);
+                start(connection, exchange);
+                return;
+            }
+            transport.getPoolStats().recordEviction(pool.hostKey);
+            closeConnection(connection);
+        }
+        if (pool.open < transport.getMaxConnectionsPerHost()) {
+            open(pool, exchange);
+        } else {
+            pool.waiting.add(exchange);
+        }
+    }
+
+    private void open(HostPool pool, Exchange exchange) {
+        exchange.reusedConnection = false;
+        transport.getPoolStats().recordMiss(pool.hostKey);
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(pool, channel);
+            boolean connected = channel.connect(exchange.address);
+            connection.key = channel.register(selector, connected ? 0 : SelectionKey.OP_CONNECT,
+                    connection);
+            pool.open++;
+            connection.exchange = exchange;
+            busy.add(connection);
+            if (connected) {
+                start(connection, exchange);
+            }
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ee) {
+                    // Report the first cause
+                }
+            }
+            fail(exchange, e);
+        }
+    }
+
+    /**
+     * Begins sending the request on a connected connection.
+     */
+    private void start(Connection connection, Exchange exchange) {
+        connection.connected = true;
+        connection.exchange = exchange;
+        busy.add(connection);
+        exchange.context.setConnected();
+        exchange.context.mark(RequestPhase.CONNECT);
+        exchange.deadline = deadline(System.nanoTime(), exchange.context.getReadTimeout());
+        exchange.resetOutput();
+        try {
+            write(connection);
+        } catch (IOException e) {
+            connectionFailed(connection, e);
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        if (!key.isValid()) {
+            return;
+        }
+        try {
+            if (connection.exchange == null) {
+                // Idle: data or EOF both mean the connection is done
+                connection.pool.idle.remove(connection);
+                transport.getPoolStats().recordEviction(connection.pool.hostKey);
+                closeConnection(connection);
+                return;
+            }
+            if (key.isConnectable()) {
+                if (connection.channel.finishConnect()) {
+                    start(connection, connection.exchange);
+                }
+            } else if (key.isWritable()) {
+                write(connection);
+            } else if (key.isReadable()) {
+                read(connection);
+            }
+        } catch (IOException e) {
+            connectionFailed(connection, e);
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+        Exchange exchange = connection.exchange;
+        connection.channel.write(exchange.output);
+        if (exchange.output.hasRemaining()) {
+            connection.key.interestOps(SelectionKey.OP_WRITE);
+        } else {
+            exchange.context.mark(RequestPhase.WRITE);
+            connection.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        Exchange exchange = connection.exchange;
+        ResponseParser parser = exchange.parser;
+        readBuffer.clear();
+        int n = connection.channel.read(readBuffer);
+        if (n < 0) {
+            if (parser.endOfStream()) {
+                complete(connection, false);
+            } else {
+                connectionFailed(connection, new IOException("Connection closed by server"));
+            }
+            return;
+        }
+        if (n == 0) {
+            return;
+        }
+        readBuffer.flip();
+        exchange.deadline = deadline(System.nanoTime(), exchange.context.getReadTimeout());
+        boolean hadStatus = parser.hasStatus();
+        boolean done = parser.parse(readBuffer);
+        if (!hadStatus && parser.hasStatus()) {
+            exchange.context.mark(RequestPhase.FIRST_BYTE);
+        }
+        if (done) {
+            // Bytes after the end of the response leave the stream out of step
+            complete(connection, parser.isKeepAlive() && !readBuffer.hasRemaining());
+        }
+    }
+
+    /**
+     * Hands the response to the caller and recycles the connection.
+     */
+    private void complete(Connection connection, boolean reusable) {
+        Exchange exchange = connection.exchange;
+        connection.exchange = null;
+        busy.remove(connection);
+        ResponseParser parser = exchange.parser;
+        HttpResponse httpResponse;
+        try {
+            httpResponse = new HttpResponse(parser.getStatus(), exchange.url,
+                    parser.getHeaders(), parser.getBody());
+        } catch (IOException e) {
+            closeConnection(connection);
+            fail(exchange, e);
+            return;
+        }
+        if (reusable && !closed) {
+            release(connection);
+        } else {
+            closeConnection(connection);
+        }
+        try {
+            exchange.future.complete(httpResponse);
+        } catch (RuntimeException e) {
+            // Callbacks must not stop the loop
+        }
+    }
+
+    /**
+     * Gives a finished connection to the next waiting exchange or returns
+     * it to the idle pool.
+     */
+    private void release(Connection connection) {
+        HostPool pool = connection.pool;
+        Exchange next = pool.waiting.poll();
+        if (next != null) {
+            next.reusedConnection = true;
+            transport.getPoolStats().recordHit(pool.hostKey);
+            start(connection, next);
+        } else if (pool.idle.size() < transport.getMaxIdlePerHost()) {
+            connection.idleSince = System.nanoTime();
+            // Readable while idle means the server closed it
+            connection.key.interestOps(SelectionKey.OP_READ);
+            pool.idle.addLast(connection);
+        } else {
+            transport.getPoolStats().recordEviction(pool.hostKey);
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Handles an I/O failure on a busy connection. A request sent on a
+     * reused connection that the server had already closed is tried once
+     * more on a new connection if it is safe to repeat. It goes to the head
+     * of the queue, so it takes the slot freed by the failed connection
+     * without exceeding the host's connection limit.
+     */
+    private void connectionFailed(Connection connection, IOException e) {
+        Exchange exchange = connection.exchange;
+        connection.exchange = null;
+        if (exchange != null && exchange.reusedConnection && exchange.idempotent
+                && !exchange.retried && !exchange.parser.isStarted()) {
+            exchange.retried = true;
+            connection.pool.waiting.addFirst(exchange);
+            exchange = null;
+        }
+        closeConnection(connection);
+        if (exchange != null) {
+            fail(exchange, e);
+        }
+    }
+
+    /**
+     * Closes a connection and lets a waiting exchange open a new one in its
+     * place.
+     */
+    private void closeConnection(Connection connection) {
+        connection.close();
+        busy.remove(connection);
+        HostPool pool = connection.pool;
+        pool.open--;
+        if (!closed && !pool.waiting.isEmpty() && pool.open < transport.getMaxConnectionsPerHost()) {
+            open(pool, pool.waiting.poll());
+        }
+    }
+
+    private void fail(Exchange exchange, IOException e) {
+        try {
+            exchange.future.fail(e);
+        } catch (RuntimeException re) {
+            // Callbacks must not stop the loop
+        }
+    }
+
+    /**
+     * Fails exchanges that have timed out, abandons those whose futures were
+     * cancelled, and closes connections that have been idle too long.
+     */
+    private void sweep(long now) {
+        List<Connection> expired = new ArrayList<Connection>();
+        for (Connection connection : busy) {
+            if (connection.exchange != null && (now - connection.exchange.deadline >= 0
+                    || connection.exchange.future.isCancelled())) {
+                expired.add(connection);
+            }
+        }
+        for (Connection connection : expired) {
+            Exchange exchange = connection.exchange;
+            connection.exchange = null;
+            closeConnection(connection);
+            fail(exchange, new SocketTimeoutException(
+                    connection.connected ? "Read timed out" : "connect timed out"));
+        }
+        long idleTimeout = TimeUnit.MILLISECONDS.toNanos(transport.getIdleTimeout());
+        for (HostPool pool : pools.values()) {
+            Iterator<Exchange> waiting = pool.waiting.iterator();
+            while (waiting.hasNext()) {
+                Exchange exchange = waiting.next();
+                if (now - exchange.deadline >= 0 || exchange.future.isCancelled()) {
+                    waiting.remove();
+                    fail(exchange, new SocketTimeoutException(
+                            "Timed out waiting for a connection to " + pool.hostKey));
+                }
+            }
+            Iterator<Connection> idle = pool.idle.iterator();
+            while (idle.hasNext()) {
+                Connection connection = idle.next();
+                if (now - connection.idleSince >= idleTimeout) {
+                    idle.remove();
+                    transport.getPoolStats().recordEviction(pool.hostKey);
+                    closeConnection(connection);
+                }
+            }
+        }
+    }
+
+    private void shutdown() {
+        IOException e = new IOException("Transport closed");
+        Exchange exchange;
+        while ((exchange = submitted.poll()) != null) {
+            fail(exchange, e);
+        }
+        for (Connection connection : new ArrayList<Connection>(busy)) {
+            if (connection.exchange != null) {
+                fail(connection.exchange, e);
+            }
+            connection.close();
+        }
+        for (HostPool pool : pools.values()) {
+            while ((exchange = pool.waiting.poll()) != null) {
+                fail(exchange, e);
+            }
+            for (Connection connection : pool.idle) {
+                connection.close();
+            }
+        }
+        busy.clear();
+        pools.clear();
+        try {
+            selector.close();
+        } catch (IOException ee) {
+            // Nothing more to do
+        }
+        // Anything submitted while shutting down
+        while ((exchange = submitted.poll()) != null) {
+            fail(exchange, e);
+        }
+    }
+
+    /**
+     * @param timeout in ms, 0 for none
+     */
+    private static long deadline(long now, int timeout) {
+        return now + ((timeout > 0) ? TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE / 4);
+    }
+
+}
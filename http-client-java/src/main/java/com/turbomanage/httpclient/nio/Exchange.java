@@ -0,0 +1,55 @@
+package com.turbomanage.httpclient.nio;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import com.turbomanage.httpclient.RequestContext;
+import com.turbomanage.httpclient.ResponseFuture;
+
+/**
+ * One request and its response as it moves through an {@link EventLoop}.
+ * Apart from construction, only accessed by the loop thread.
+ *
+ * @author David M. Chandler
+ */
+class Exchange {
+
+    final String hostKey;
+    /**
+     * Resolved before the exchange is submitted to a loop.
+     */
+    InetSocketAddress address;
+    final String url;
+    final byte[] request;
+    final boolean idempotent;
+    final RequestContext context;
+    final ResponseFuture future;
+    final ResponseParser parser;
+    ByteBuffer output;
+    /**
+     * Time by which the next event must happen, from System.nanoTime().
+     */
+    long deadline;
+    boolean reusedConnection;
+    boolean retried;
+
+    Exchange(String hostKey, InetSocketAddress address, String url, byte[] request,
+            boolean head, boolean idempotent, RequestContext context, ResponseFuture future) {
+        this.hostKey = hostKey;
+        this.address = address;
+        this.url = url;
+        this.request = request;
+        this.idempotent = idempotent;
+        this.context = context;
+        this.future = future;
+        this.parser = new ResponseParser(head);
+    }
+
+    /**
+     * Prepares to send the request on a connection, from the start.
+     */
+    void resetOutput() {
+        output = ByteBuffer.wrap(request);
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.turbomanage.httpclient.nio;
+
+import java.util.ArrayDeque;
+
+/**
+ * Connections to one host:port, and requests waiting for one. Only accessed
+ * by the loop thread.
+ *
+ * @author David M. Chandler
+ */
+class HostPool {
+
+    final String hostKey;
+    /**
+     * Most recently used last.
+     */
+    final ArrayDeque<Connection> idle = new ArrayDeque<Connection>();
+    final ArrayDeque<Exchange> waiting = new ArrayDeque<Exchange>();
+    /**
+     * Connections open or opening, idle or not.
+     */
+    int open;
+
+    HostPool(String hostKey) {
+        this.hostKey = hostKey;
+    }
+
+}
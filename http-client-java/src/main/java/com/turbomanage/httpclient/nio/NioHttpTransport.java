@@ -0,0 +1,298 @@
+package com.turbomanage.httpclient.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.turbomanage.httpclient.AsyncHttpTransport;
+import com.turbomanage.httpclient.ConnectionPoolStats;
+import com.turbomanage.httpclient.HttpMethod;
+import com.turbomanage.httpclient.HttpResponse;
+import com.turbomanage.httpclient.RequestBody;
+import com.turbomanage.httpclient.RequestContext;
+import com.turbomanage.httpclient.ResponseFuture;
+
+/**
+ * Non-blocking HTTP/1.1 transport built on {@link java.nio.channels.Selector}
+ * and {@link java.nio.channels.SocketChannel}. A few event-loop threads
+ * drive all connections, so thousands of requests can be in flight without
+ * a thread each. Connections are kept alive and pooled per host; each loop
+ * owns the pools of the hosts assigned to it, so no locks are taken on the
+ * request path.
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    NioHttpTransport nio = new NioHttpTransport(2);
+ *    AsyncHttpClient client = new AsyncHttpClient(factory, "http://api.example.com");
+ *    client.setTransport(nio);
+ *    ResponseFuture res = client.getAsync("/items", null);
+ * </pre>
+ *
+ * <p>Limitations: only http URLs are supported (not https), request bodies
+ * are buffered in memory before sending, and requests are not pipelined.
+ * Callbacks run on an event-loop thread and must not block; in particular
+ * they must not make synchronous requests through this transport. Host
+ * names of requests made from a callback, such as immediate retries, are
+ * resolved on a separate thread so that a slow DNS lookup never stalls the
+ * loop.</p>
+ *
+ * @author David M. Chandler
+ */
+public class NioHttpTransport implements AsyncHttpTransport, Closeable {
+
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    private static Executor resolver;
+
+    private final EventLoop[] loops;
+    private volatile int maxConnectionsPerHost = 64;
+    private volatile int maxIdlePerHost = 16;
+    private volatile long idleTimeout = 30000;
+    private final ConnectionPoolStats poolStats = new ConnectionPoolStats();
+
+    /**
+     * Constructs a transport with one event loop, which is enough for most
+     * clients.
+     *
+     * @throws IOException if a selector cannot be opened
+     */
+    public NioHttpTransport() throws IOException {
+        this(1);
+    }
+
+    /**
+     * Constructs a transport. Each host is served by one loop.
+     *
+     * @param eventLoops Number of threads
+     * @throws IOException if a selector cannot be opened
+     */
+    public NioHttpTransport(int eventLoops) throws IOException {
+        this.loops = new EventLoop[Math.max(eventLoops, 1)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(this, "http-client-nio-" + (i + 1));
+        }
+    }
+
+    /**
+     * Waits for the response on the calling thread.
+     *
+     * @see com.turbomanage.httpclient.HttpTransport#execute(com.turbomanage.httpclient.HttpMethod, java.lang.String, java.util.Map, com.turbomanage.httpclient.RequestBody, com.turbomanage.httpclient.RequestContext)
+     */
+    @Override
+    public HttpResponse execute(HttpMethod httpMethod, String url, Map<String, String> headers,
+            RequestBody body, RequestContext context) throws IOException {
+        if (isLoopThread()) {
+            throw new IllegalStateException(
+                    "Synchronous request on an event-loop thread would deadlock");
+        }
+        ResponseFuture future = new ResponseFuture();
+        executeAsync(httpMethod, url, headers, body, context, future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.toString());
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.turbomanage.httpclient.AsyncHttpTransport#executeAsync(com.turbomanage.httpclient.HttpMethod, java.lang.String, java.util.Map, com.turbomanage.httpclient.RequestBody, com.turbomanage.httpclient.RequestContext, com.turbomanage.httpclient.ResponseFuture)
+     */
+    @Override
+    public void executeAsync(HttpMethod httpMethod, String url, Map<String, String> headers,
+            RequestBody body, RequestContext context, ResponseFuture future) {
+        final Exchange exchange;
+        try {
+            URL u = new URL(url);
+            if (!"http".equalsIgnoreCase(u.getProtocol())) {
+                throw new MalformedURLException("NioHttpTransport supports only http: " + url);
+            }
+            String host = u.getHost();
+            int port = (u.getPort() < 0) ? 80 : u.getPort();
+            String hostKey = host + ":" + port;
+            InetSocketAddress address = InetSocketAddress.createUnresolved(host, port);
+            String hostHeader = (u.getPort() < 0) ? host : hostKey;
+            byte[] request = encode(httpMethod, u.getFile(), hostHeader, headers, body);
+            boolean idempotent = httpMethod != HttpMethod.POST;
+            exchange = new Exchange(hostKey, address, url, request,
+                    httpMethod == HttpMethod.HEAD, idempotent, context, future);
+        } catch (IOException e) {
+            future.fail(e);
+            return;
+        }
+        if (isLoopThread()) {
+            getResolver().execute(new Runnable() {
+                @Override
+                public void run() {
+                    resolveAndSubmit(exchange);
+                }
+            });
+        } else {
+            resolveAndSubmit(exchange);
+        }
+    }
+
+    /**
+     * Looks up the host, which may block, and hands the exchange to the
+     * loop that serves the host.
+     */
+    private void resolveAndSubmit(Exchange exchange) {
+        InetSocketAddress address = new InetSocketAddress(exchange.address.getHostName(),
+                exchange.address.getPort());
+        if (address.isUnresolved()) {
+            exchange.future.fail(new UnknownHostException(exchange.address.getHostName()));
+            return;
+        }
+        exchange.address = address;
+        loops[(exchange.hostKey.hashCode() & Integer.MAX_VALUE) % loops.length].submit(exchange);
+    }
+
+    private boolean isLoopThread() {
+        for (EventLoop loop : loops) {
+            if (loop.isLoopThread()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the shared threads that resolve host names for requests made
+     * on an event-loop thread.
+     *
+     * @return Executor
+     */
+    static synchronized Executor getResolver() {
+        if (resolver == null) {
+            resolver = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "http-client-nio-resolver");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return resolver;
+    }
+
+    /**
+     * Serializes the request line, headers and body.
+     */
+    private static byte[] encode(HttpMethod httpMethod, String target, String host,
+            Map<String, String> headers, RequestBody body) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(httpMethod.getMethodName()).append(' ')
+                .append(target.length() == 0 ? "/" : target).append(" HTTP/1.1\r\n");
+        sb.append("Host: ").append(host).append("\r\n");
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                String name = header.getKey();
+                if (name.equalsIgnoreCase("Host") || name.equalsIgnoreCase("Content-Length")
+                        || name.equalsIgnoreCase("Transfer-Encoding")) {
+                    continue;
+                }
+                sb.append(name).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        long length = (body == null) ? -1 : body.getContentLength();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                (int) Math.min(sb.length() + Math.max(length, 0) + 64, 16 * 1024 * 1024));
+        byte[] content = null;
+        if (body != null) {
+            ByteArrayOutputStream bodyOut = (length >= 0 && length < Integer.MAX_VALUE)
+                    ? new ByteArrayOutputStream((int) length) : new ByteArrayOutputStream();
+            body.writeTo(bodyOut);
+            content = bodyOut.toByteArray();
+            sb.append("Content-Length: ").append(content.length).append("\r\n");
+        } else if (httpMethod.getDoOutput()) {
+            sb.append("Content-Length: 0\r\n");
+        }
+        out.write(sb.toString().getBytes("ISO-8859-1"));
+        out.write(CRLF);
+        if (content != null) {
+            out.write(content);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Stops the event loops, closing all connections and failing requests
+     * in flight.
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        for (EventLoop loop : loops) {
+            loop.close();
+        }
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return Connection reuse by host:port
+     */
+    public ConnectionPoolStats getPoolStats() {
+        return poolStats;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Sets the most connections open to one host at once. Further requests
+     * wait for a connection, up to their connection timeout. Default 64.
+     *
+     * @param maxConnectionsPerHost
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = Math.max(maxConnectionsPerHost, 1);
+    }
+
+    public int getMaxIdlePerHost() {
+        return maxIdlePerHost;
+    }
+
+    /**
+     * Sets the most idle connections kept open to one host. Default 16.
+     *
+     * @param maxIdlePerHost
+     */
+    public void setMaxIdlePerHost(int maxIdlePerHost) {
+        this.maxIdlePerHost = Math.max(maxIdlePerHost, 0);
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets how long an idle connection is kept before it is closed. Default
+     * 30 seconds.
+     *
+     * @param idleTimeout in ms
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+}
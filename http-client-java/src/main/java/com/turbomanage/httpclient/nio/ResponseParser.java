@@ -0,0 +1,359 @@
+package com.turbomanage.httpclient.nio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.turbomanage.httpclient.HttpResponse;
+
+/**
+ * Incremental parser for one HTTP/1.1 response. Bytes are fed as they
+ * arrive; the parser tracks framing (Content-Length, chunked, or until
+ * close) so that the connection can be reused once the response ends.
+ *
+ * @author David M. Chandler
+ */
+class ResponseParser {
+
+    private static final int STATUS = 0;
+    private static final int HEADERS = 1;
+    private static final int FIXED = 2;
+    private static final int CHUNK_SIZE = 3;
+    private static final int CHUNK_DATA = 4;
+    private static final int CHUNK_END = 5;
+    private static final int TRAILERS = 6;
+    private static final int UNTIL_CLOSE = 7;
+    private static final int DONE = 8;
+
+    /**
+     * Longest status, header or chunk-size line accepted.
+     */
+    private static final int MAX_LINE = 64 * 1024;
+    /**
+     * Largest Content-Length trusted for presizing the body.
+     */
+    private static final int MAX_PRESIZE = 16 * 1024 * 1024;
+
+    private final boolean head;
+    private final StringBuilder line = new StringBuilder();
+    private int state = STATUS;
+    private boolean started;
+    private boolean http11;
+    private int status;
+    private Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+    private byte[] body = new byte[0];
+    private int bodyLength;
+    private long remaining;
+    private boolean keepAlive;
+
+    /**
+     * @param head true if the request was HEAD, whose response has no body
+     */
+    ResponseParser(boolean head) {
+        this.head = head;
+    }
+
+    /**
+     * Consumes bytes from the buffer.
+     *
+     * @param buffer Positioned at the new bytes
+     * @return true once the response is complete; any bytes left in the
+     *         buffer belong to no response
+     * @throws IOException if the response is malformed
+     */
+    boolean parse(ByteBuffer buffer) throws IOException {
+        if (buffer.hasRemaining()) {
+            started = true;
+        }
+        while (buffer.hasRemaining() && state != DONE) {
+            switch (state) {
+            case STATUS:
+            case HEADERS:
+            case CHUNK_SIZE:
+            case CHUNK_END:
+            case TRAILERS:
+                if (readLine(buffer)) {
+                    onLine(line.toString());
+                    line.setLength(0);
+                }
+                break;
+            case FIXED:
+            case CHUNK_DATA:
+                int n = (int) Math.min(remaining, buffer.remaining());
+                append(buffer, n);
+                remaining -= n;
+                if (remaining == 0) {
+                    state = (state == FIXED) ? DONE : CHUNK_END;
+                }
+                break;
+            case UNTIL_CLOSE:
+                append(buffer, buffer.remaining());
+                break;
+            default:
+                break;
+            }
+        }
+        return state == DONE;
+    }
+
+    /**
+     * Called when the server closes the connection.
+     *
+     * @return true if this ends the response
+     */
+    boolean endOfStream() {
+        if (state == UNTIL_CLOSE) {
+            state = DONE;
+            keepAlive = false;
+        }
+        return state == DONE;
+    }
+
+    /**
+     * Whether any bytes of the response have been received.
+     *
+     * @return true if started
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Whether the status line has been received.
+     *
+     * @return true once status and headers are known
+     */
+    boolean hasStatus() {
+        return state > HEADERS;
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the body, decoded if it was sent compressed.
+     *
+     * @return Body, or null if the response has none
+     * @throws IOException if the compressed body is corrupt
+     */
+    byte[] getBody() throws IOException {
+        if (!hasBody()) {
+            return null;
+        }
+        byte[] bytes = (body.length == bodyLength) ? body : Arrays.copyOf(body, bodyLength);
+        String encoding = getHeader("Content-Encoding");
+        if (encoding == null || bytes.length == 0) {
+            return bytes;
+        }
+        encoding = encoding.trim();
+        InputStream in;
+        if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+            in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        } else if (encoding.equalsIgnoreCase("deflate")) {
+            in = new InflaterInputStream(new ByteArrayInputStream(bytes));
+        } else {
+            return bytes;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[8192];
+            int nRead;
+            while ((nRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, nRead);
+            }
+            return out.toByteArray();
+        } finally {
+            // Ends the Inflater, which otherwise holds native memory
+            in.close();
+        }
+    }
+
+    private boolean readLine(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            char c = (char) (buffer.get() & 0xff);
+            if (c == '\n') {
+                int last = line.length() - 1;
+                if (last >= 0 && line.charAt(last) == '\r') {
+                    line.setLength(last);
+                }
+                return true;
+            }
+            if (line.length() >= MAX_LINE) {
+                throw new IOException("Response line too long");
+            }
+            line.append(c);
+        }
+        return false;
+    }
+
+    private void onLine(String s) throws IOException {
+        switch (state) {
+        case STATUS:
+            if (s.length() == 0) {
+                // Tolerate blank lines between responses
+                return;
+            }
+            parseStatus(s);
+            state = HEADERS;
+            break;
+        case HEADERS:
+            if (s.length() == 0) {
+                endOfHeaders();
+            } else {
+                parseHeader(s);
+            }
+            break;
+        case CHUNK_SIZE:
+            int semi = s.indexOf(';');
+            String size = (semi < 0 ? s : s.substring(0, semi)).trim();
+            try {
+                remaining = Long.parseLong(size, 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad chunk size: " + s);
+            }
+            if (remaining < 0) {
+                throw new IOException("Bad chunk size: " + s);
+            }
+            state = (remaining == 0) ? TRAILERS : CHUNK_DATA;
+            if (remaining > 0) {
+                reserve(remaining);
+            }
+            break;
+        case CHUNK_END:
+            state = CHUNK_SIZE;
+            break;
+        case TRAILERS:
+            if (s.length() == 0) {
+                state = DONE;
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void parseStatus(String s) throws IOException {
+        // HTTP/1.1 200 OK
+        if (!s.startsWith("HTTP/")) {
+            throw new IOException("Bad status line: " + s);
+        }
+        int sp = s.indexOf(' ');
+        if (sp < 0 || s.length() < sp + 4) {
+            throw new IOException("Bad status line: " + s);
+        }
+        http11 = !s.startsWith("HTTP/1.0");
+        try {
+            status = Integer.parseInt(s.substring(sp + 1, sp + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad status line: " + s);
+        }
+        // Same convention as HttpURLConnection.getHeaderFields()
+        headers.put(null, singleton(s));
+    }
+
+    private void parseHeader(String s) throws IOException {
+        int colon = s.indexOf(':');
+        if (colon <= 0) {
+            throw new IOException("Bad header: " + s);
+        }
+        String name = s.substring(0, colon).trim();
+        String value = s.substring(colon + 1).trim();
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                entry.getValue().add(value);
+                return;
+            }
+        }
+        headers.put(name, singleton(value));
+    }
+
+    private void endOfHeaders() {
+        if (status >= 100 && status < 200) {
+            // Interim response such as 100 Continue, the real one follows
+            headers = new LinkedHashMap<String, List<String>>();
+            state = STATUS;
+            return;
+        }
+        String connection = getHeader("Connection");
+        keepAlive = http11 ? !"close".equalsIgnoreCase(connection)
+                : "keep-alive".equalsIgnoreCase(connection);
+        if (!hasBody()) {
+            state = DONE;
+            return;
+        }
+        String transferEncoding = getHeader("Transfer-Encoding");
+        String contentLength = getHeader("Content-Length");
+        if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            state = CHUNK_SIZE;
+        } else if (contentLength != null) {
+            try {
+                remaining = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                remaining = -1;
+            }
+            if (remaining < 0) {
+                keepAlive = false;
+                state = UNTIL_CLOSE;
+            } else {
+                reserve(remaining);
+                state = (remaining == 0) ? DONE : FIXED;
+            }
+        } else {
+            keepAlive = false;
+            state = UNTIL_CLOSE;
+        }
+    }
+
+    private boolean hasBody() {
+        return !head && status != 204 && status != 304;
+    }
+
+    private String getHeader(String name) {
+        return HttpResponse.getHeader(headers, name);
+    }
+
+    /**
+     * Grows the body array so that the given number of further bytes fit,
+     * avoiding repeated copies when the length is known.
+     */
+    private void reserve(long more) {
+        long needed = bodyLength + more;
+        if (needed > body.length && needed <= MAX_PRESIZE) {
+            body = Arrays.copyOf(body, (int) needed);
+        }
+    }
+
+    private void append(ByteBuffer buffer, int n) {
+        if (bodyLength + n > body.length) {
+            int size = Math.max(bodyLength + n, Math.max(body.length * 2, 8192));
+            body = Arrays.copyOf(body, size);
+        }
+        buffer.get(body, bodyLength, n);
+        bodyLength += n;
+    }
+
+    private static List<String> singleton(String value) {
+        List<String> list = new ArrayList<String>(1);
+        list.add(value);
+        return list;
+    }
+
+}
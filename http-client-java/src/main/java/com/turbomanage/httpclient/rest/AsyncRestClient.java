@@ -1,9 +1,13 @@
 package com.turbomanage.httpclient.rest;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import com.turbomanage.httpclient.AbstractHttpClient;
 import com.turbomanage.httpclient.AsyncHttpClient;
 import com.turbomanage.httpclient.HttpResponse;
 import com.turbomanage.httpclient.ParameterMap;
+import com.turbomanage.httpclient.StreamingHttpResponse;
 
 public abstract class AsyncRestClient<M extends MediaType> {
 
@@ -37,6 +41,67 @@ public abstract class AsyncRestClient<M extends MediaType> {
 		return null;
 	}
 
+	/**
+	 * Like {@link #get(String, ParameterMap, Class)}, but decodes the object
+	 * as the response is read instead of from a buffered copy, so that a
+	 * large response is not held in memory twice. The {@link ResultHandler}
+	 * is passed a {@link StreamingHttpResponse}, whose body is null.
+	 * 
+	 * @param path
+	 * @param params
+	 * @param responseType
+	 * @return Decoded object, or null
+	 */
+	public <T> T getStreaming(String path, ParameterMap params, Class<T> responseType) {
+		StreamingHttpResponse httpResponse = httpClient.getStream(path, params);
+		try {
+			if (resultHandler.onResult(httpResponse) && httpResponse != null) {
+				InputStream in = httpResponse.getInputStream();
+				if (in != null) {
+					return objFactory.toObj(in, responseType);
+				}
+			}
+		} catch (IOException e) {
+			resultHandler.onError(e);
+		} finally {
+			if (httpResponse != null) {
+				httpResponse.close();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Requests an array and returns an iterator that decodes its elements
+	 * as the response is read, so that arrays of any length can be
+	 * processed in constant memory. The caller must close the iterator
+	 * unless it reads to the end. The {@link ResultHandler} is passed a
+	 * {@link StreamingHttpResponse}, whose body is null.
+	 * 
+	 * @param path
+	 * @param params
+	 * @param elementType
+	 * @return Iterator over the elements, or null
+	 */
+	public <T> ObjectIterator<T> getIterator(String path, ParameterMap params,
+			Class<T> elementType) {
+		StreamingHttpResponse httpResponse = httpClient.getStream(path, params);
+		if (httpResponse == null) {
+			resultHandler.onResult(null);
+			return null;
+		}
+		try {
+			InputStream in = httpResponse.getInputStream();
+			if (resultHandler.onResult(httpResponse) && in != null) {
+				return objFactory.toIterator(in, elementType);
+			}
+		} catch (IOException e) {
+			resultHandler.onError(e);
+		}
+		httpResponse.close();
+		return null;
+	}
+
 	public <T> ObjectResponse<M> post(String path, T obj) {
 		HttpResponse httpResponse = httpClient.post(path, AbstractHttpClient.JSON, toBytes(obj));
 		if (resultHandler.onResult(httpResponse)) {
@@ -45,6 +110,28 @@ public abstract class AsyncRestClient<M extends MediaType> {
 		return null;
 	}
 
+	/**
+	 * Like {@link #post(String, Object)}, but serializes the object directly
+	 * onto the connection with {@link ObjectFactory#toRequestBody(Object)},
+	 * so that a large object is never held in memory as a byte[]. The body
+	 * is sent using chunked transfer encoding, which the server must accept.
+	 * A serialization error fails the request with a
+	 * {@link com.turbomanage.httpclient.RequestBodyException}, which is
+	 * never retried.
+	 * 
+	 * @param path
+	 * @param obj
+	 * @return Response, or null
+	 */
+	public <T> ObjectResponse<M> postStreaming(String path, T obj) {
+		HttpResponse httpResponse = httpClient.post(path, AbstractHttpClient.JSON,
+				objFactory.toRequestBody(obj));
+		if (resultHandler.onResult(httpResponse)) {
+			return objFactory.wrapResponse(httpResponse);
+		}
+		return null;
+	}
+
 	public <T> ObjectResponse<M> put(String path, T obj) {
 		HttpResponse httpResponse = httpClient.put(path, AbstractHttpClient.JSON, toBytes(obj));
 		if (resultHandler.onResult(httpResponse)) {
@@ -53,6 +140,23 @@ public abstract class AsyncRestClient<M extends MediaType> {
 		return null;
 	}
 
+	/**
+	 * Like {@link #put(String, Object)}, but streams the object like
+	 * {@link #postStreaming(String, Object)}.
+	 * 
+	 * @param path
+	 * @param obj
+	 * @return Response, or null
+	 */
+	public <T> ObjectResponse<M> putStreaming(String path, T obj) {
+		HttpResponse httpResponse = httpClient.put(path, AbstractHttpClient.JSON,
+				objFactory.toRequestBody(obj));
+		if (resultHandler.onResult(httpResponse)) {
+			return objFactory.wrapResponse(httpResponse);
+		}
+		return null;
+	}
+
 	public ObjectResponse<M> delete(String path, ParameterMap params) {
 		HttpResponse httpResponse = httpClient.delete(path, params);
 		if (resultHandler.onResult(httpResponse)) {
@@ -61,6 +165,17 @@ public abstract class AsyncRestClient<M extends MediaType> {
 		return null;
 	}
 
+	/**
+	 * Creates a sender that collects objects and POSTs them to the path in
+	 * batches, for paths that receive many small objects.
+	 * 
+	 * @param path
+	 * @return New sender, which should be closed when no longer needed
+	 */
+	public BatchingSender<M> newBatchingSender(String path) {
+		return new BatchingSender<M>(httpClient, objFactory, path);
+	}
+
 	public <T> byte[] toBytes(T obj) {
 		return objFactory.toBytes(obj);
 	}
@@ -0,0 +1,336 @@
+package com.turbomanage.httpclient.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.turbomanage.httpclient.AbstractHttpClient;
+import com.turbomanage.httpclient.AsyncCallback;
+import com.turbomanage.httpclient.AsyncHttpClient;
+import com.turbomanage.httpclient.HttpResponse;
+import com.turbomanage.httpclient.ResponseFuture;
+
+/**
+ * Collects small objects and POSTs them to one path in batches, so that
+ * each object does not pay for a request of its own. Objects are serialized
+ * with {@link ObjectFactory#toBytes(Object)} as they are sent, and each batch
+ * is joined with {@link ObjectFactory#toBatchBytes(List)} (a JSON array for
+ * {@link com.turbomanage.httpclient.json.DefaultJsonMapper}).
+ *
+ * <p>A batch is posted when it reaches {@link #getBatchSize()} bytes or
+ * when its first object has waited {@link #getLinger()} ms, whichever comes
+ * first. Batches are posted asynchronously and follow the client's retry
+ * policy. Each object gets a future that completes with the response to its
+ * batch.</p>
+ *
+ * <p>Objects are counted against {@link #getBufferSize()} bytes from when
+ * they are sent until their batch completes. When the buffer is full,
+ * {@link #send(Object)} blocks for up to {@link #getMaxBlock()} ms and then
+ * fails the object's future with a {@link RejectedExecutionException}, so a
+ * slow server slows producers down rather than filling memory.</p>
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    BatchingSender&lt;JsonType&gt; events = restClient.newBatchingSender("/events");
+ *    events.setLinger(10);
+ *    ...
+ *    events.send(event);
+ *    ...
+ *    events.close();
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public class BatchingSender<M extends MediaType> {
+
+	private static ScheduledExecutorService defaultScheduler;
+
+	private final AsyncHttpClient httpClient;
+	private final ObjectFactory<M> objFactory;
+	private final String path;
+	private volatile String contentType = AbstractHttpClient.JSON;
+	private volatile int batchSize = 16 * 1024;
+	private volatile long linger = 5;
+	private volatile long bufferSize = 1024 * 1024;
+	private volatile long maxBlock = 1000;
+	private volatile ScheduledExecutorService scheduler;
+
+	/**
+	 * Guards the fields below.
+	 */
+	private final Object lock = new Object();
+	private Batch current;
+	private long buffered;
+	private boolean closed;
+
+	/**
+	 * Constructs a sender that posts to a path of the client.
+	 *
+	 * @param httpClient
+	 * @param factory Serializes each object and joins batches
+	 * @param path
+	 */
+	public BatchingSender(AsyncHttpClient httpClient, ObjectFactory<M> factory, String path) {
+		this.httpClient = httpClient;
+		this.objFactory = factory;
+		this.path = path;
+	}
+
+	/**
+	 * Adds an object to the current batch. Blocks only while the buffer is
+	 * full.
+	 *
+	 * @param obj
+	 * @return Future response to the batch that carries the object
+	 */
+	public <T> ResponseFuture send(T obj) {
+		ResponseFuture future = new ResponseFuture();
+		byte[] bytes = objFactory.toBytes(obj);
+		if (bytes == null) {
+			future.fail(new IllegalArgumentException("Could not serialize " + obj));
+			return future;
+		}
+		Batch full = null;
+		Batch lingering = null;
+		synchronized (lock) {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlock);
+			// An object larger than the whole buffer is let through alone
+			while (!closed && buffered > 0 && buffered + bytes.length > bufferSize) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					future.fail(new RejectedExecutionException("Batch buffer full"));
+					return future;
+				}
+				try {
+					TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					future.fail(e);
+					return future;
+				}
+			}
+			if (closed) {
+				future.fail(new IllegalStateException("Sender closed"));
+				return future;
+			}
+			buffered += bytes.length;
+			if (current == null) {
+				current = lingering = new Batch();
+			}
+			current.add(bytes, future);
+			if (current.bytes >= batchSize) {
+				full = current;
+				current = null;
+			}
+		}
+		if (full != null) {
+			post(full);
+		} else if (lingering != null) {
+			getScheduler().schedule(lingering, linger, TimeUnit.MILLISECONDS);
+		}
+		return future;
+	}
+
+	/**
+	 * Posts the current batch now, without waiting for it to fill or linger.
+	 */
+	public void flush() {
+		Batch batch;
+		synchronized (lock) {
+			batch = current;
+			current = null;
+		}
+		if (batch != null) {
+			post(batch);
+		}
+	}
+
+	/**
+	 * Posts the current batch and fails any later sends. Batches already
+	 * posted still complete.
+	 */
+	public void close() {
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+		flush();
+	}
+
+	private void post(final Batch batch) {
+		byte[] body;
+		try {
+			body = objFactory.toBatchBytes(batch.items);
+		} catch (RuntimeException e) {
+			release(batch);
+			batch.fail(e);
+			return;
+		}
+		httpClient.postAsync(path, contentType, body).addCallback(new AsyncCallback() {
+			@Override
+			public void onComplete(HttpResponse httpResponse) {
+				release(batch);
+				for (ResponseFuture future : batch.futures) {
+					future.complete(httpResponse);
+				}
+			}
+
+			@Override
+			public void onError(Exception e) {
+				release(batch);
+				batch.fail(e);
+			}
+		});
+	}
+
+	private void release(Batch batch) {
+		synchronized (lock) {
+			buffered -= batch.bytes;
+			lock.notifyAll();
+		}
+	}
+
+	private ScheduledExecutorService getScheduler() {
+		ScheduledExecutorService s = scheduler;
+		return (s != null) ? s : getDefaultScheduler();
+	}
+
+	/**
+	 * Returns the shared thread that posts batches when their linger time
+	 * has elapsed.
+	 *
+	 * @return Scheduler
+	 */
+	static synchronized ScheduledExecutorService getDefaultScheduler() {
+		if (defaultScheduler == null) {
+			defaultScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "http-client-batcher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return defaultScheduler;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Sets the MIME type of batched requests. Default
+	 * {@link AbstractHttpClient#JSON}.
+	 *
+	 * @param contentType
+	 */
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the size in bytes of serialized objects at which a batch is
+	 * posted without waiting for the linger time. Default 16 KB.
+	 *
+	 * @param batchSize
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getLinger() {
+		return linger;
+	}
+
+	/**
+	 * Sets how long the first object of a batch waits for others before the
+	 * batch is posted. Default 5 ms.
+	 *
+	 * @param linger in ms
+	 */
+	public void setLinger(long linger) {
+		this.linger = linger;
+	}
+
+	public long getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Sets the most bytes of objects that may be waiting or in flight.
+	 * Default 1 MB.
+	 *
+	 * @param bufferSize
+	 */
+	public void setBufferSize(long bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public long getMaxBlock() {
+		return maxBlock;
+	}
+
+	/**
+	 * Sets how long {@link #send(Object)} may block while the buffer is
+	 * full. Default 1 second.
+	 *
+	 * @param maxBlock in ms
+	 */
+	public void setMaxBlock(long maxBlock) {
+		this.maxBlock = maxBlock;
+	}
+
+	/**
+	 * Sets the scheduler that posts lingering batches, or null for a shared
+	 * daemon thread (the default).
+	 *
+	 * @param scheduler
+	 */
+	public void setScheduler(ScheduledExecutorService scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Objects collected for one request. Posted by the scheduler when the
+	 * linger time has elapsed, unless it has been posted already.
+	 */
+	private class Batch implements Runnable {
+
+		final List<byte[]> items = new ArrayList<byte[]>();
+		final List<ResponseFuture> futures = new ArrayList<ResponseFuture>();
+		int bytes;
+
+		void add(byte[] item, ResponseFuture future) {
+			items.add(item);
+			futures.add(future);
+			bytes += item.length;
+		}
+
+		void fail(Exception e) {
+			for (ResponseFuture future : futures) {
+				future.fail(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			synchronized (lock) {
+				if (current != this) {
+					return;
+				}
+				current = null;
+			}
+			post(this);
+		}
+	}
+
+}
@@ -1,14 +1,148 @@
 package com.turbomanage.httpclient.rest;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
 import com.turbomanage.httpclient.HttpResponse;
+import com.turbomanage.httpclient.RequestBody;
+import com.turbomanage.httpclient.RequestBodyException;
 
 
 public abstract class ObjectFactory<M extends MediaType> {
 
 	public abstract <T> byte[] toBytes(T obj);
+
+	/**
+	 * Serializes an object onto a stream, which is left open. The default
+	 * writes the result of {@link #toBytes(Object)}; override to write as
+	 * the object is serialized, without building the whole byte[] first.
+	 * 
+	 * Implementations should report serialization errors as a
+	 * {@link RequestBodyException}, so that the request is not retried.
+	 * 
+	 * @param obj
+	 * @param out
+	 * @throws IOException if the object cannot be serialized or written
+	 */
+	public <T> void writeTo(T obj, OutputStream out) throws IOException {
+		byte[] bytes = toBytes(obj);
+		if (bytes == null) {
+			throw new RequestBodyException("Could not serialize " + obj, null);
+		}
+		out.write(bytes);
+	}
+
+	/**
+	 * Wraps an object in a {@link RequestBody} that serializes it with
+	 * {@link #writeTo(Object, OutputStream)} directly onto the connection.
+	 * The length is not known in advance, so the body is sent using chunked
+	 * transfer encoding. Each retry serializes the object again.
+	 * 
+	 * @param obj
+	 * @return Request body
+	 */
+	public <T> RequestBody toRequestBody(final T obj) {
+		return new RequestBody() {
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				try {
+					ObjectFactory.this.writeTo(obj, out);
+				} catch (RuntimeException e) {
+					throw new RequestBodyException("Could not serialize " + obj, e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Joins objects serialized with {@link #toBytes(Object)} into the body
+	 * of one batched request, as sent by {@link BatchingSender}. The default
+	 * puts each on its own line, as in JSON Lines.
+	 * 
+	 * @param items
+	 * @return Request body
+	 */
+	public byte[] toBatchBytes(List<byte[]> items) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] item : items) {
+			out.write(item, 0, item.length);
+			out.write('\n');
+		}
+		return out.toByteArray();
+	}
 	
 	public abstract <T> T toObj(byte[] bytes, Class<T> responseType);
 	
+	/**
+	 * Decodes an object from a stream, which is closed. The default reads
+	 * the whole stream into memory and calls {@link #toObj(byte[], Class)};
+	 * override to decode as the stream is read.
+	 * 
+	 * @param in
+	 * @param responseType
+	 * @return Decoded object, may be null
+	 * @throws IOException
+	 */
+	public <T> T toObj(InputStream in, Class<T> responseType) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int nRead;
+			while ((nRead = in.read(buffer)) != -1) {
+				out.write(buffer, 0, nRead);
+			}
+			return toObj(out.toByteArray(), responseType);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Decodes the elements of an array from a stream. Closing the iterator
+	 * closes the stream. The default decodes the whole array with
+	 * {@link #toObj(InputStream, Class)}; override to decode one element at
+	 * a time.
+	 * 
+	 * @param in
+	 * @param elementType
+	 * @return Iterator over the elements
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> ObjectIterator<T> toIterator(InputStream in, Class<T> elementType)
+			throws IOException {
+		Class<?> arrayType = Array.newInstance(elementType, 0).getClass();
+		T[] array = (T[]) toObj(in, arrayType);
+		List<T> list = (array == null) ? Arrays.<T>asList() : Arrays.asList(array);
+		final Iterator<T> it = list.iterator();
+		return new ObjectIterator<T>() {
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public T next() {
+				return it.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
 	public abstract ObjectResponse<M> wrapResponse(HttpResponse res);
 
 }
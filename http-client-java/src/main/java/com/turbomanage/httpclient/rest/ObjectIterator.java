@@ -0,0 +1,38 @@
+package com.turbomanage.httpclient.rest;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Iterates over the elements of an array as they are decoded from a stream,
+ * so that only one element at a time is held in memory. Returned by
+ * {@link ObjectFactory#toIterator(java.io.InputStream, Class)} and
+ * {@link AsyncRestClient#getIterator(String, com.turbomanage.httpclient.ParameterMap, Class)}.
+ * Errors while reading are thrown from {@link #hasNext()} or
+ * {@link #next()} as unchecked exceptions.
+ *
+ * <p>Reading to the end releases the stream; otherwise the caller must
+ * close the iterator, preferably in a finally block:</p>
+ * <pre>
+ *    ObjectIterator&lt;Item&gt; items = restClient.getIterator("/items", null, Item.class);
+ *    try {
+ *        while (items.hasNext()) {
+ *            process(items.next());
+ *        }
+ *    } finally {
+ *        items.close();
+ *    }
+ * </pre>
+ *
+ * @author David M. Chandler
+ */
+public interface ObjectIterator<T> extends Iterator<T>, Closeable {
+
+	/**
+	 * Releases the stream. Errors while closing are ignored, so the
+	 * iterator can be closed in a finally block without a catch.
+	 */
+	@Override
+	void close();
+
+}
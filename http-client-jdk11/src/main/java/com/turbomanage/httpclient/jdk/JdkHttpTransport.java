@@ -0,0 +1,234 @@
+package com.turbomanage.httpclient.jdk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.turbomanage.httpclient.AsyncCallback;
+import com.turbomanage.httpclient.AsyncHttpTransport;
+import com.turbomanage.httpclient.HttpMethod;
+import com.turbomanage.httpclient.HttpResponse;
+import com.turbomanage.httpclient.RequestBody;
+import com.turbomanage.httpclient.RequestContext;
+import com.turbomanage.httpclient.RequestPhase;
+import com.turbomanage.httpclient.ResponseFuture;
+
+/**
+ * Transport that executes requests with {@link java.net.http.HttpClient}
+ * (Java 11 and later). It negotiates HTTP/2, over TLS with ALPN or by h2c
+ * upgrade on plain http, and multiplexes concurrent requests to a host as
+ * streams over one connection instead of one connection per request. Async
+ * requests use sendAsync, so no client thread waits for them.
+ *
+ * <p>Sample usage:</p>
+ * <pre>
+ *    AsyncHttpClient client = new AsyncHttpClient(factory, "https://api.example.com");
+ *    client.setTransport(new JdkHttpTransport());
+ * </pre>
+ *
+ * <p>java.net.http has no per-request connect timeout, so each request
+ * is given a total timeout of the context's connection timeout plus its
+ * read timeout. Request bodies are buffered in memory before sending.</p>
+ *
+ * @author David M. Chandler
+ */
+public class JdkHttpTransport implements AsyncHttpTransport {
+
+    /**
+     * Headers set by java.net.http itself, which it refuses to accept.
+     */
+    private static final Set<String> RESTRICTED = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    static {
+        RESTRICTED.add("Connection");
+        RESTRICTED.add("Content-Length");
+        RESTRICTED.add("Expect");
+        RESTRICTED.add("Host");
+        RESTRICTED.add("Upgrade");
+    }
+
+    private final HttpClient httpClient;
+
+    /**
+     * Constructs a transport that prefers HTTP/2 and follows redirects like
+     * {@link java.net.HttpURLConnection}.
+     */
+    public JdkHttpTransport() {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build());
+    }
+
+    /**
+     * Constructs a transport around a configured client, for example one with
+     * an SSLContext, proxy or executor of its own.
+     *
+     * @param httpClient
+     */
+    public JdkHttpTransport(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.turbomanage.httpclient.HttpTransport#execute(com.turbomanage.httpclient.HttpMethod, java.lang.String, java.util.Map, com.turbomanage.httpclient.RequestBody, com.turbomanage.httpclient.RequestContext)
+     */
+    @Override
+    public HttpResponse execute(HttpMethod httpMethod, String url, Map<String, String> headers,
+            RequestBody body, RequestContext context) throws IOException {
+        java.net.http.HttpRequest request = newRequest(httpMethod, url, headers, body, context);
+        try {
+            return toHttpResponse(httpClient.send(request, bodyHandler(context)));
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.turbomanage.httpclient.AsyncHttpTransport#executeAsync(com.turbomanage.httpclient.HttpMethod, java.lang.String, java.util.Map, com.turbomanage.httpclient.RequestBody, com.turbomanage.httpclient.RequestContext, com.turbomanage.httpclient.ResponseFuture)
+     */
+    @Override
+    public void executeAsync(HttpMethod httpMethod, String url, Map<String, String> headers,
+            RequestBody body, RequestContext context, ResponseFuture future) {
+        java.net.http.HttpRequest request;
+        try {
+            request = newRequest(httpMethod, url, headers, body, context);
+        } catch (IOException e) {
+            future.fail(e);
+            return;
+        }
+        CompletableFuture<java.net.http.HttpResponse<byte[]>> pending =
+                httpClient.sendAsync(request, bodyHandler(context));
+        future.addCallback(new AsyncCallback() {
+            @Override
+            public void onComplete(HttpResponse httpResponse) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (e instanceof CancellationException) {
+                    pending.cancel(true);
+                }
+            }
+        });
+        pending.whenComplete((response, t) -> {
+            if (t == null) {
+                try {
+                    future.complete(toHttpResponse(response));
+                } catch (IOException e) {
+                    future.fail(e);
+                }
+                return;
+            }
+            Throwable cause = (t instanceof CompletionException && t.getCause() != null)
+                    ? t.getCause() : t;
+            future.fail((cause instanceof Exception) ? (Exception) cause
+                    : new IOException(cause));
+        });
+    }
+
+    private java.net.http.HttpRequest newRequest(HttpMethod httpMethod, String url,
+            Map<String, String> headers, RequestBody body, RequestContext context)
+            throws IOException {
+        java.net.http.HttpRequest.Builder builder;
+        try {
+            builder = java.net.http.HttpRequest.newBuilder(URI.create(url));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(url + " is not a valid URL", e);
+        }
+        long timeout = (long) context.getConnectionTimeout() + context.getReadTimeout();
+        if (context.getConnectionTimeout() > 0 && context.getReadTimeout() > 0) {
+            builder.timeout(Duration.ofMillis(timeout));
+        }
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (!RESTRICTED.contains(header.getKey())) {
+                    builder.header(header.getKey(), header.getValue());
+                }
+            }
+        }
+        builder.method(httpMethod.getMethodName(), toBodyPublisher(body));
+        context.mark(RequestPhase.PREPARE);
+        return builder.build();
+    }
+
+    private static BodyPublisher toBodyPublisher(RequestBody body) throws IOException {
+        if (body == null) {
+            return BodyPublishers.noBody();
+        }
+        long length = body.getContentLength();
+        ByteArrayOutputStream out = (length >= 0 && length < Integer.MAX_VALUE)
+                ? new ByteArrayOutputStream((int) length) : new ByteArrayOutputStream();
+        body.writeTo(out);
+        return BodyPublishers.ofByteArray(out.toByteArray());
+    }
+
+    /**
+     * Reads the body into a byte[], recording when the status arrives.
+     */
+    private static BodyHandler<byte[]> bodyHandler(RequestContext context) {
+        return responseInfo -> {
+            context.setConnected();
+            context.mark(RequestPhase.FIRST_BYTE);
+            return BodyHandlers.ofByteArray().apply(responseInfo);
+        };
+    }
+
+    private static HttpResponse toHttpResponse(java.net.http.HttpResponse<byte[]> response)
+            throws IOException {
+        Map<String, List<String>> headers = response.headers().map();
+        byte[] body = decode(response.headers().firstValue("Content-Encoding").orElse(null),
+                response.body());
+        if ("HEAD".equals(response.request().method())) {
+            body = null;
+        }
+        return new HttpResponse(response.statusCode(), response.uri().toString(), headers, body);
+    }
+
+    private static byte[] decode(String encoding, byte[] body) throws IOException {
+        if (encoding == null || body == null || body.length == 0) {
+            return body;
+        }
+        encoding = encoding.trim();
+        InputStream in;
+        if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+            in = new GZIPInputStream(new ByteArrayInputStream(body));
+        } else if (encoding.equalsIgnoreCase("deflate")) {
+            in = new InflaterInputStream(new ByteArrayInputStream(body));
+        } else {
+            return body;
+        }
+        try (InputStream decoder = in) {
+            return decoder.readAllBytes();
+        }
+    }
+
+    /**
+     * Accessor method.
+     *
+     * @return The underlying client
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+}